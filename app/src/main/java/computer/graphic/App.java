@@ -1,14 +1,23 @@
 
 package computer.graphic;
 
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
@@ -47,7 +56,51 @@ public class App extends Application {
     private boolean rotate_left = false;
     private boolean rotate_right = false;
 
+    /**
+     * The names of the movement states, in the order used by getInputState and setInputState.
+     */
+    public static final String[] INPUT_STATES = { "move_forward", "move_backward", "move_left", "move_right",
+            "move_up", "move_down", "rotate_up", "rotate_down", "rotate_left", "rotate_right" };
+
+    /**
+     * The system property that enables the recording of the movement states.
+     * When set, the movement states of every frame are recorded to the file it names.
+     */
+    public static final String RECORD_PROPERTY = "cuberender.record";
+
+    private InputRecorder recorder;
+
+    /**
+     * The available rendering backends.
+     * LINES draws every edge as a javafx Line, TILED rasterizes the edges into a framebuffer
+     * using the TiledRasterizer, and RAYCAST casts a ray per pixel through the grid using the RayCaster.
+     */
+    public enum RenderMode {
+        LINES, TILED, RAYCAST
+    }
+
+    public static RenderMode RENDER_MODE = RenderMode.LINES;
+
+    /**
+     * Whether the cubes hidden behind other cubes are skipped by the LINES and TILED backends.
+     */
+    public static boolean OCCLUSION_CULLING = true;
+
     private Simulation simulation;
+    private OcclusionCuller culler = new OcclusionCuller();
+
+    // The framebuffer and the image it is presented through, used by the framebuffer based backends.
+    // The image shares the memory of the framebuffer through the pixel buffer.
+    private Framebuffer framebuffer;
+    private PixelBuffer<IntBuffer> pixel_buffer;
+    private ImageView image_view;
+
+    // What the last frame was rendered from, to skip the frames where nothing changed
+    private double[] last_pose;
+    private long last_version = -1;
+    private double last_width = -1;
+    private double last_height = -1;
+    private RenderMode last_mode;
 
     // The main entry point for all JavaFX applications
     @Override
@@ -58,9 +111,18 @@ public class App extends Application {
         // Create a new simulation
         simulation = new Simulation();
 
+        // The camera collides with the cubes of the simulation when Camera.COLLISION_ENABLED is set
+        Camera.INSTANCE.setCollisionWorld(simulation);
+
         // Handle user input
         setUserInput();
 
+        // Record the movement states if requested
+        String record_path = System.getProperty(RECORD_PROPERTY);
+        if (record_path != null) {
+            recorder = new InputRecorder(Path.of(record_path), Camera.INSTANCE);
+        }
+
         // Create an animation timer and start the animation
         AnimationTimer timer = makeAnimationTimer();
         timer.start();
@@ -84,16 +146,35 @@ public class App extends Application {
 
             @Override
             public void handle(long now) {
+                record();
+                simulation.applyEdits();
+                updateCamera();
+
+                // When neither the camera nor the world changed, the last frame is still on the screen
+                if (!sceneChanged()) {
+                    return;
+                }
+
                 updateHeader();
                 nodes.forEach(pixel -> pane.getChildren().remove(pixel));
                 nodes.clear();
-                updateCamera();
-                for (Cube[][] cubes : simulation.getWorld()) {
-                    for (Cube[] cube : cubes) {
-                        for (Cube c : cube) {
-                            nodes.addAll(Renderer.drawCube(c));
-                        }
+                if (RENDER_MODE == RenderMode.RAYCAST) {
+                    renderFramebuffer(framebuffer -> RayCaster.render(simulation, Camera.INSTANCE, framebuffer));
+                    return;
+                }
+                if (RENDER_MODE == RenderMode.TILED) {
+                    ArrayList<double[]> segments = new ArrayList<double[]>();
+                    for (Cube c : visibleCubes()) {
+                        segments.addAll(Renderer.projectCube(c));
                     }
+                    renderFramebuffer(framebuffer -> TiledRasterizer.rasterize(segments, framebuffer));
+                    return;
+                }
+                if (image_view != null) {
+                    pane.getChildren().remove(image_view);
+                }
+                for (Cube c : visibleCubes()) {
+                    nodes.addAll(Renderer.drawCube(c));
                 }
                 
             }
@@ -102,10 +183,155 @@ public class App extends Application {
         return timer;
     }
 
+    /**
+     * Get the cubes to draw this frame. If occlusion culling is enabled, the cubes hidden behind other cubes
+     * are left out, and the cubes are ordered from front to back.
+     * 
+     * @return The cubes to draw
+     */
+    private ArrayList<Cube> visibleCubes() {
+        if (OCCLUSION_CULLING) {
+            return culler.cull(simulation, Camera.INSTANCE, primaryStage.getWidth(), primaryStage.getHeight());
+        }
+        ArrayList<Cube> cubes = new ArrayList<Cube>();
+        for (Cube[][] plane : simulation.getWorld()) {
+            for (Cube[] row : plane) {
+                for (Cube c : row) {
+                    if (c != null) {
+                        cubes.add(c);
+                    }
+                }
+            }
+        }
+        return cubes;
+    }
+
+    /**
+     * Check if anything that is drawn changed since the last frame: the camera, the world, the size of the
+     * window, or the rendering backend. The state of this frame is remembered for the next call.
+     * 
+     * @return true if the frame has to be rendered again, false otherwise
+     */
+    private boolean sceneChanged() {
+        Camera camera = Camera.INSTANCE;
+        double[] pose = new double[9];
+        System.arraycopy(camera.getPosition(), 0, pose, 0, 3);
+        System.arraycopy(camera.getSurface_normal(), 0, pose, 3, 3);
+        System.arraycopy(camera.getUp_vector(), 0, pose, 6, 3);
+
+        boolean changed = !Arrays.equals(pose, last_pose) || simulation.getVersion() != last_version
+                || primaryStage.getWidth() != last_width || primaryStage.getHeight() != last_height
+                || RENDER_MODE != last_mode;
+
+        last_pose = pose;
+        last_version = simulation.getVersion();
+        last_width = primaryStage.getWidth();
+        last_height = primaryStage.getHeight();
+        last_mode = RENDER_MODE;
+        return changed;
+    }
+
+    /**
+     * Draw into the framebuffer and present it on the screen.
+     * The framebuffer is only written inside the update callback of the pixel buffer, so JavaFX never reads
+     * a half drawn frame, and only the region that changed is uploaded.
+     * 
+     * @param draw The function drawing into the framebuffer
+     */
+    private void renderFramebuffer(Consumer<Framebuffer> draw) {
+        Framebuffer framebuffer = getFramebuffer();
+        pixel_buffer.updateBuffer(buffer -> {
+            draw.accept(framebuffer);
+            int[] region = framebuffer.takeDirtyRegion();
+            if (region == null) {
+                return Rectangle2D.EMPTY;
+            }
+            return new Rectangle2D(region[0], region[1], region[2], region[3]);
+        });
+    }
+
+    /**
+     * Get a framebuffer matching the size of the window, reallocating it when the window is resized.
+     * 
+     * @return The framebuffer
+     */
+    private Framebuffer getFramebuffer() {
+        int width = Math.max(1, (int) primaryStage.getWidth());
+        int height = Math.max(1, (int) primaryStage.getHeight());
+        if (image_view == null) {
+            image_view = new ImageView();
+        }
+        if (framebuffer == null || framebuffer.getWidth() != width || framebuffer.getHeight() != height) {
+            framebuffer = new Framebuffer(width, height, true);
+            pixel_buffer = new PixelBuffer<IntBuffer>(width, height, framebuffer.getBuffer(),
+                    PixelFormat.getIntArgbPreInstance());
+            image_view.setImage(new WritableImage(pixel_buffer));
+        }
+        if (!pane.getChildren().contains(image_view)) {
+            pane.getChildren().add(image_view);
+        }
+        return framebuffer;
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (recorder != null) {
+            recorder.close();
+            System.out.println("Recorded " + recorder.getFrames() + " frames to " + System.getProperty(RECORD_PROPERTY));
+        }
+    }
+
+    /**
+     * Record the movement states of the current frame, if recording is enabled.
+     * Recording is stopped if the file cannot be written.
+     */
+    private void record() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.record(getInputState(), Camera.COLLISION_ENABLED);
+        } catch (IOException e) {
+            System.err.println("Failed to record the input: " + e.getMessage());
+            recorder = null;
+        }
+    }
+
+    /**
+     * Get the movement states of the camera.
+     * 
+     * @return The movement states, in the order of INPUT_STATES
+     */
+    public boolean[] getInputState() {
+        return new boolean[] { move_forward, move_backward, move_left, move_right, move_up, move_down, rotate_up,
+                rotate_down, rotate_left, rotate_right };
+    }
+
+    /**
+     * Set the movement states of the camera, as if the keys were pressed or released.
+     * 
+     * @param states The movement states, in the order of INPUT_STATES
+     */
+    public void setInputState(boolean[] states) {
+        if (states.length != INPUT_STATES.length) {
+            throw new IllegalArgumentException("Expected " + INPUT_STATES.length + " movement states");
+        }
+        move_forward = states[0];
+        move_backward = states[1];
+        move_left = states[2];
+        move_right = states[3];
+        move_up = states[4];
+        move_down = states[5];
+        rotate_up = states[6];
+        rotate_down = states[7];
+        rotate_left = states[8];
+        rotate_right = states[9];
+    }
+
     /**
      * Update the camera position based on the movement states.
      */
-    private void updateCamera() {
+    void updateCamera() {
         if (move_forward) {
             Camera.INSTANCE.moveForward();
         }
@@ -163,8 +389,8 @@ public class App extends Application {
      * The camera can move forward, backward, left, right, up, and down using the W,
      * S, A, D, Q, and E keys.
      * The camera can also rotate up, down, left, and right using the arrow keys.
-     * The camera's position, surface normal, and up vector can be printed to the
-     * console.
+     * The camera's position, surface normal, up vector, and the cube it looks at can be printed to the
+     * console with the P key, and clicking prints the cube under the mouse cursor.
      */
     private void setUserInput() {
         scene.setOnKeyPressed(e -> {
@@ -204,12 +430,24 @@ public class App extends Application {
                     System.out
                             .println("Camera surface normal: " + Arrays.toString(Camera.INSTANCE.getSurface_normal()));
                     System.out.println("Camera up vector: " + Arrays.toString(Camera.INSTANCE.getUp_vector()));
+                    System.out.println("Looking at: " + Picker.pickForward(simulation, Camera.INSTANCE));
+                    break;
+                case C:
+                    Camera.COLLISION_ENABLED = !Camera.COLLISION_ENABLED;
+                    System.out.println("Camera collision: " + (Camera.COLLISION_ENABLED ? "on" : "off"));
                     break;
                 default:
                     break;
             }
         });
 
+        // Print the cube under the mouse cursor when clicking
+        pane.setOnMouseClicked(e -> {
+            Picker.Pick pick = Picker.pickScreen(simulation, Camera.INSTANCE, e.getX(), e.getY(),
+                    primaryStage.getWidth(), primaryStage.getHeight());
+            System.out.println("Picked: " + pick);
+        });
+
         scene.setOnKeyReleased(e -> {
             switch (e.getCode()) {
                 case W:
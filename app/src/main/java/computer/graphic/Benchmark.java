@@ -0,0 +1,286 @@
+package computer.graphic;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The Benchmark class replays an input recording made with the InputRecorder and measures the frame times.
+ *
+ * The recorded movement states drive App.updateCamera one frame at a time, so every replay moves the camera
+ * exactly the same way no matter how fast the frames are rendered. Each frame is then rendered headless with
+ * one of the framebuffer backends, without starting JavaFX.
+ *
+ * The report lists the frame time percentiles, the garbage collections that happened during the replay, and the
+ * number of primitives drawn. If a frame time budget is given, the benchmark exits with an error when the 95th
+ * percentile is over budget, so that it can be used as a regression gate in the build.
+ *
+ * Usage: Benchmark recording [--mode lines|tiled|raycast] [--width pixels] [--height pixels] [--world size]
+ * [--warmup frames] [--max-p95 milliseconds]
+ */
+public class Benchmark {
+
+    /**
+     * The options of a benchmark run.
+     */
+    public static class Options {
+        public Path recording;
+        public App.RenderMode mode = App.RenderMode.TILED;
+        public int width = 800;
+        public int height = 600;
+        public int world_size = 0;
+        public int warmup = 60;
+        public double max_p95 = 0;
+    }
+
+    /**
+     * The results of a benchmark run.
+     */
+    public static class Report {
+        public int world_size;
+        public int frames;
+        public double[] frame_times_ms;
+        public long gc_count;
+        public long gc_time_ms;
+        public long primitives;
+        public long visible_cubes;
+
+        /**
+         * Get a percentile of the frame times, using the nearest rank method.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the frame time in milliseconds
+         */
+        public double percentile(double percentile) {
+            if (frame_times_ms.length == 0) {
+                return 0;
+            }
+            double[] sorted = frame_times_ms.clone();
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format(Locale.ROOT, "frames            %d%n", frames));
+            report.append(String.format(Locale.ROOT, "frame time p50    %.3f ms%n", percentile(50)));
+            report.append(String.format(Locale.ROOT, "frame time p90    %.3f ms%n", percentile(90)));
+            report.append(String.format(Locale.ROOT, "frame time p95    %.3f ms%n", percentile(95)));
+            report.append(String.format(Locale.ROOT, "frame time p99    %.3f ms%n", percentile(99)));
+            report.append(String.format(Locale.ROOT, "frame time max    %.3f ms%n", percentile(100)));
+            report.append(String.format(Locale.ROOT, "gc collections    %d%n", gc_count));
+            report.append(String.format(Locale.ROOT, "gc pause total    %d ms%n", gc_time_ms));
+            report.append(String.format(Locale.ROOT, "primitives drawn  %d (%.1f per frame)%n", primitives,
+                    frames == 0 ? 0.0 : (double) primitives / frames));
+            report.append(String.format(Locale.ROOT, "cubes drawn       %d (%.1f per frame)%n", visible_cubes,
+                    frames == 0 ? 0.0 : (double) visible_cubes / frames));
+            return report.toString();
+        }
+    }
+
+    /**
+     * Replay a recording and measure it.
+     * The recording is replayed once without measuring to warm up the JIT compiler, up to the number of warmup frames.
+     *
+     * @param options the options of the run
+     * @return the report of the measured replay
+     * @throws IOException if the recording cannot be loaded
+     */
+    public static Report run(Options options) throws IOException {
+        InputRecorder.Recording recording = InputRecorder.load(options.recording);
+
+        // The run changes the settings of the world and the camera, they are restored for the caller
+        int world_size = Simulation.WORLD_SIZE;
+        boolean collision_enabled = Camera.COLLISION_ENABLED;
+        Simulation collision_world = Camera.INSTANCE.getCollisionWorld();
+        try {
+            if (options.world_size > 0) {
+                Simulation.WORLD_SIZE = options.world_size;
+            } else if (recording.world_size > 0) {
+                Simulation.WORLD_SIZE = recording.world_size;
+            }
+            Simulation simulation = new Simulation();
+            Camera.INSTANCE.setCollisionWorld(simulation);
+            Framebuffer framebuffer = new Framebuffer(options.width, options.height);
+            OcclusionCuller culler = new OcclusionCuller();
+
+            // Warm up
+            App app = new App();
+            resetCamera(recording);
+            for (int i = 0; i < Math.min(options.warmup, recording.frames.size()); i++) {
+                app.setInputState(recording.frames.get(i));
+                Camera.COLLISION_ENABLED = recording.collision.get(i);
+                app.updateCamera();
+                renderFrame(options, simulation, framebuffer, culler, new Report());
+            }
+
+            // Measure
+            Report report = new Report();
+            report.world_size = simulation.getSize();
+            report.frames = recording.frames.size();
+            report.frame_times_ms = new double[report.frames];
+            app = new App();
+            resetCamera(recording);
+            long gc_count = gcCount();
+            long gc_time = gcTime();
+
+            for (int i = 0; i < report.frames; i++) {
+                long start = System.nanoTime();
+                app.setInputState(recording.frames.get(i));
+                Camera.COLLISION_ENABLED = recording.collision.get(i);
+                simulation.applyEdits();
+                app.updateCamera();
+                renderFrame(options, simulation, framebuffer, culler, report);
+                report.frame_times_ms[i] = (System.nanoTime() - start) / 1e6;
+            }
+
+            report.gc_count = gcCount() - gc_count;
+            report.gc_time_ms = gcTime() - gc_time;
+            return report;
+        } finally {
+            Simulation.WORLD_SIZE = world_size;
+            Camera.COLLISION_ENABLED = collision_enabled;
+            Camera.INSTANCE.setCollisionWorld(collision_world);
+        }
+    }
+
+    /**
+     * Render one frame headless, the same way the App renders it with the given mode.
+     * For the LINES mode, only the projection is measured, since the Lines need a running JavaFX application.
+     */
+    private static void renderFrame(Options options, Simulation simulation, Framebuffer framebuffer,
+            OcclusionCuller culler, Report report) {
+        if (options.mode == App.RenderMode.RAYCAST) {
+            RayCaster.render(simulation, Camera.INSTANCE, framebuffer);
+            report.primitives += (long) options.width * options.height;
+            return;
+        }
+
+        List<Cube> cubes;
+        if (App.OCCLUSION_CULLING) {
+            cubes = culler.cull(simulation, Camera.INSTANCE, options.width, options.height);
+        } else {
+            cubes = new ArrayList<Cube>();
+            for (Cube[][] plane : simulation.getWorld()) {
+                for (Cube[] row : plane) {
+                    for (Cube cube : row) {
+                        if (cube != null) {
+                            cubes.add(cube);
+                        }
+                    }
+                }
+            }
+        }
+        ArrayList<double[]> segments = new ArrayList<double[]>();
+        for (Cube cube : cubes) {
+            segments.addAll(Renderer.projectCube(cube));
+        }
+        if (options.mode == App.RenderMode.TILED) {
+            TiledRasterizer.rasterize(segments, framebuffer);
+        }
+        report.primitives += segments.size();
+        report.visible_cubes += cubes.size();
+    }
+
+    private static void resetCamera(InputRecorder.Recording recording) {
+        Camera.INSTANCE.setPosition(recording.position.clone());
+        Camera.INSTANCE.setSurface_normal(recording.surface_normal.clone());
+        Camera.INSTANCE.setUp_vector(recording.up_vector.clone());
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Parse the command line options.
+     *
+     * @param args the command line arguments
+     * @return the options
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                options.recording = Path.of(arg);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--mode":
+                    options.mode = App.RenderMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--width":
+                    options.width = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    options.height = Integer.parseInt(value);
+                    break;
+                case "--world":
+                    options.world_size = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    options.warmup = Integer.parseInt(value);
+                    break;
+                case "--max-p95":
+                    options.max_p95 = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.recording == null) {
+            throw new IllegalArgumentException("Missing recording file");
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Benchmark recording [--mode lines|tiled|raycast] [--width pixels] "
+                    + "[--height pixels] [--world size] [--warmup frames] [--max-p95 milliseconds]");
+            System.exit(2);
+            return;
+        }
+
+        Report report = run(options);
+        System.out.println("Replay of " + options.recording + " (" + options.mode + ", " + options.width + "x"
+                + options.height + ", world " + report.world_size + ")");
+        System.out.print(report);
+
+        if (options.max_p95 > 0 && report.percentile(95) > options.max_p95) {
+            System.err.println(String.format(Locale.ROOT, "Frame time p95 of %.3f ms is over the budget of %.3f ms",
+                    report.percentile(95), options.max_p95));
+            System.exit(1);
+        }
+    }
+
+}
@@ -10,47 +10,141 @@ public class Camera {
     public static double ROTATION_SPEED = 0.01;
     public static double FOCAL_LENGTH = 200;
 
+    // Collision settings. When enabled, the camera is a sphere that cannot move into the cubes of the collision world.
+    public static boolean COLLISION_ENABLED = false;
+    public static double COLLISION_RADIUS = 5;
+
     private double[] position = { 0, 0, 100 };
     private double[] surface_normal = { 0, 0, -1};
     private double[] up_vector = { 0, 1, 0 };
 
+    // The world the camera collides with, if any
+    private Simulation collision_world;
+
     // Camera mobility functions
     public void moveForward() {
-        position[0] += CAMERA_SPEED * surface_normal[0];
-        position[1] += CAMERA_SPEED * surface_normal[1];
-        position[2] += CAMERA_SPEED * surface_normal[2];
+        move(surface_normal, CAMERA_SPEED);
     }
 
     public void moveBackward() {
-        position[0] -= CAMERA_SPEED * surface_normal[0];
-        position[1] -= CAMERA_SPEED * surface_normal[1];
-        position[2] -= CAMERA_SPEED * surface_normal[2];
+        move(surface_normal, -CAMERA_SPEED);
     }
 
     public void moveLeft() {
         double[] left_vector = util.crossProduct(up_vector, surface_normal);
-        position[0] += CAMERA_SPEED * left_vector[0];
-        position[1] += CAMERA_SPEED * left_vector[1];
-        position[2] += CAMERA_SPEED * left_vector[2];
+        move(left_vector, CAMERA_SPEED);
     }
 
     public void moveRight() {
         double[] left_vector = util.crossProduct(up_vector, surface_normal);
-        position[0] -= CAMERA_SPEED * left_vector[0];
-        position[1] -= CAMERA_SPEED * left_vector[1];
-        position[2] -= CAMERA_SPEED * left_vector[2];
+        move(left_vector, -CAMERA_SPEED);
     }
 
     public void moveUp() {
-        position[0] += CAMERA_SPEED * up_vector[0];
-        position[1] += CAMERA_SPEED * up_vector[1];
-        position[2] += CAMERA_SPEED * up_vector[2];
+        move(up_vector, CAMERA_SPEED);
     }
 
     public void moveDown() {
-        position[0] -= CAMERA_SPEED * up_vector[0];
-        position[1] -= CAMERA_SPEED * up_vector[1];
-        position[2] -= CAMERA_SPEED * up_vector[2];
+        move(up_vector, -CAMERA_SPEED);
+    }
+
+    /**
+     * Move the camera along a direction. If collisions are enabled, the camera is swept as a sphere
+     * of COLLISION_RADIUS through the cells of the collision world, and stops against the occupied cells
+     * while sliding along them on the other axes.
+     * 
+     * The movement is split into steps of at most half the radius so that the sphere cannot tunnel through
+     * a cube, and each step only examines the few cells overlapped by the sphere, so the cost does not depend
+     * on the size of the world.
+     * 
+     * @param direction the direction of the movement
+     * @param distance the distance to move along the direction
+     */
+    private void move(double[] direction, double distance) {
+        double[] delta = util.scalarProduct(direction, distance);
+        if (!COLLISION_ENABLED || collision_world == null || COLLISION_RADIUS <= 0) {
+            position[0] += delta[0];
+            position[1] += delta[1];
+            position[2] += delta[2];
+            return;
+        }
+
+        // A camera that is already inside a cube, for example because a cube was placed on it, can move freely to get out
+        if (overlaps(position)) {
+            position[0] += delta[0];
+            position[1] += delta[1];
+            position[2] += delta[2];
+            return;
+        }
+
+        double length = Math.sqrt(util.dotProduct(delta, delta));
+        int steps = Math.max(1, (int) Math.ceil(length / (COLLISION_RADIUS / 2)));
+        double[] step = util.scalarProduct(delta, 1.0 / steps);
+        double[] candidate = new double[3];
+
+        for (int i = 0; i < steps; i++) {
+            // Resolve each axis separately, so that the camera slides along the cubes it touches
+            for (int axis = 0; axis < 3; axis++) {
+                if (step[axis] == 0) {
+                    continue;
+                }
+                candidate[0] = position[0];
+                candidate[1] = position[1];
+                candidate[2] = position[2];
+                candidate[axis] += step[axis];
+                if (!overlaps(candidate)) {
+                    position[axis] = candidate[axis];
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the collision sphere centered on a point overlaps an occupied cell of the collision world.
+     * Only the cells overlapped by the bounding box of the sphere are examined.
+     * 
+     * @param center the center of the sphere
+     * @return true if the sphere overlaps a cube, false otherwise
+     */
+    private boolean overlaps(double[] center) {
+        double cube_size = collision_world.getCubeSize();
+        double[] origin = collision_world.getOrigin();
+        double radius = COLLISION_RADIUS;
+
+        int min_x = (int) Math.floor((center[0] - radius - origin[0]) / cube_size);
+        int min_y = (int) Math.floor((center[1] - radius - origin[1]) / cube_size);
+        int min_z = (int) Math.floor((center[2] - radius - origin[2]) / cube_size);
+        int max_x = (int) Math.floor((center[0] + radius - origin[0]) / cube_size);
+        int max_y = (int) Math.floor((center[1] + radius - origin[1]) / cube_size);
+        int max_z = (int) Math.floor((center[2] + radius - origin[2]) / cube_size);
+
+        for (int x = min_x; x <= max_x; x++) {
+            for (int y = min_y; y <= max_y; y++) {
+                for (int z = min_z; z <= max_z; z++) {
+                    if (!collision_world.isOccupied(x, y, z)) {
+                        continue;
+                    }
+                    // Distance from the center of the sphere to the closest point of the cell
+                    double dx = distanceToRange(center[0], origin[0] + x * cube_size, cube_size);
+                    double dy = distanceToRange(center[1], origin[1] + y * cube_size, cube_size);
+                    double dz = distanceToRange(center[2], origin[2] + z * cube_size, cube_size);
+                    if (dx * dx + dy * dy + dz * dz < radius * radius) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double distanceToRange(double value, double min, double size) {
+        if (value < min) {
+            return min - value;
+        }
+        if (value > min + size) {
+            return value - min - size;
+        }
+        return 0;
     }
 
     public void rotateLeft() {
@@ -117,4 +211,16 @@ public class Camera {
         this.up_vector = up_vector;
     }
 
+    public Simulation getCollisionWorld() {
+        return collision_world;
+    }
+
+    /**
+     * Set the world the camera collides with when COLLISION_ENABLED is true, or null to disable the collisions.
+     * The world is read during the movements, so they must happen on the thread that applies its edits.
+     */
+    public void setCollisionWorld(Simulation collision_world) {
+        this.collision_world = collision_world;
+    }
+
 }
@@ -1,70 +1,88 @@
 package computer.graphic;
 
+/**
+ * A cube placed in the world. A cube is an instance of a template: it only stores its center and its size,
+ * and its edges are derived from the template, which is shared by all the cubes.
+ */
 public class Cube {
 
     // The center of the cube
-    private double[] center = { 0, 0, 0 };
+    private double x = 0;
+    private double y = 0;
+    private double z = 0;
 
-    // The size of the cube
+    // The size of the cube, used as the scale of the template
     private double size = 1;
 
-    // The array of edges of the cube, each edge is represented by two points in 3D space
-    private double[][][] edges;
+    // The shape of the cube
+    private Template template = Template.UNIT_CUBE;
 
     public Cube() {
-        setCenter();
     }
 
     public Cube(double[] center, double size) {
-        this.center = center;
+        this(center, size, Template.UNIT_CUBE);
+    }
+
+    public Cube(double[] center, double size, Template template) {
+        this.x = center[0];
+        this.y = center[1];
+        this.z = center[2];
         this.size = size;
-        setCenter();
+        this.template = template;
+    }
+
+    public double[] getCenter() {
+        return new double[] { x, y, z };
+    }
+
+    public double getX() {
+        return x;
     }
 
-    private void setCenter() {
-
-        double x = center[0];
-        double y = center[1];
-        double z = center[2];
-
-        double halfSize = size / 2;
-        
-        this.edges = new double[][][]{
-            // front bottom left to front bottom right
-            { { x - halfSize, y - halfSize, z - halfSize }, { x + halfSize, y - halfSize, z - halfSize } },
-            // front bottom right to front top right
-            { { x + halfSize, y - halfSize, z - halfSize }, { x + halfSize, y + halfSize, z - halfSize } },
-            // front top right to front top left
-            { { x + halfSize, y + halfSize, z - halfSize }, { x - halfSize, y + halfSize, z - halfSize } },
-            // front top left to front bottom left
-            { { x - halfSize, y + halfSize, z - halfSize }, { x - halfSize, y - halfSize, z - halfSize } },
-            // back bottom left to back bottom right
-            { { x - halfSize, y - halfSize, z + halfSize }, { x + halfSize, y - halfSize, z + halfSize } },
-            // back bottom right to back top right
-            { { x + halfSize, y - halfSize, z + halfSize }, { x + halfSize, y + halfSize, z + halfSize } },
-            // back top right to back top left
-            { { x + halfSize, y + halfSize, z + halfSize }, { x - halfSize, y + halfSize, z + halfSize } },
-            // back top left to back bottom left
-            { { x - halfSize, y + halfSize, z + halfSize }, { x - halfSize, y - halfSize, z + halfSize } },
-            // front bottom left to back bottom left
-            { { x - halfSize, y - halfSize, z - halfSize }, { x - halfSize, y - halfSize, z + halfSize } },
-            // front bottom right to back bottom right
-            { { x + halfSize, y - halfSize, z - halfSize }, { x + halfSize, y - halfSize, z + halfSize } },
-            // front top right to back top right
-            { { x + halfSize, y + halfSize, z - halfSize }, { x + halfSize, y + halfSize, z + halfSize } },
-            // front top left to back top left
-            { { x - halfSize, y + halfSize, z - halfSize }, { x - halfSize, y + halfSize, z + halfSize } }
-        };
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
 
+    public double getSize() {
+        return size;
     }
 
+    public Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * Get the edges of the cube in absolute coordinates.
+     * The edges are computed from the template at each call, the renderer uses the template directly instead.
+     *
+     * @return the array of edges of the cube, each edge is represented by two points in 3D space
+     */
     public double[][][] getEdges() {
-        return edges;
+        double[][] vertices = template.getVertices();
+        int[][] edges = template.getEdges();
+        double[][][] result = new double[edges.length][2][];
+        for (int i = 0; i < edges.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                double[] vertex = vertices[edges[i][j]];
+                result[i][j] = new double[] { x + size * vertex[0], y + size * vertex[1], z + size * vertex[2] };
+            }
+        }
+        return result;
     }
 
+    /**
+     * Replace the edges of the cube. The cube gets its own template, built from the edges.
+     *
+     * @param edges the array of edges, each edge is represented by two points in 3D space
+     */
     public void setEdges(double[][][] edges) {
-        this.edges = edges;
+        this.template = Template.fromEdges(edges, getCenter(), size);
     }
 
-    
-}
\ No newline at end of file
+
+}
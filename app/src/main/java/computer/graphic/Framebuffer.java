@@ -0,0 +1,197 @@
+package computer.graphic;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The Framebuffer class is a block of ARGB pixels that the software rasterizers write into.
+ * Pixels are stored row by row, starting from the top left corner of the screen.
+ *
+ * The pixels of a framebuffer presented by JavaFX live in a direct IntBuffer, so that they can be shown through
+ * a PixelBuffer without copying. Headless framebuffers keep their pixels on the heap, which is cheaper to allocate.
+ * Every color written is opaque, so the pixels are valid both as straight and as premultiplied ARGB.
+ *
+ * The framebuffer keeps track of the regions that changed since the last call to takeDirtyRegion, with a
+ * granularity of DIRTY_TILE_SIZE pixels, so that only the changed region has to be uploaded to the screen.
+ * Writing a pixel with the color it already has does not mark it as changed.
+ */
+public class Framebuffer {
+
+    /**
+     * The width and height in pixels of the tiles used to track the changed regions.
+     */
+    public static final int DIRTY_TILE_SIZE = 64;
+
+    private final int width;
+    private final int height;
+    private final IntBuffer pixels;
+
+    // The pixels of a heap framebuffer, or null for a direct framebuffer
+    private final int[] array;
+
+    // Scratch buffers to compare the pixels of a direct framebuffer, one dirty tile wide
+    private static final ThreadLocal<int[]> SEGMENTS = ThreadLocal.withInitial(() -> new int[DIRTY_TILE_SIZE]);
+
+    // Whether each tile changed since the last call to takeDirtyRegion
+    private final int dirty_columns;
+    private final boolean[] dirty;
+
+    /**
+     * Create a new framebuffer with its pixels on the heap. All the pixels start transparent,
+     * and the whole framebuffer is dirty.
+     *
+     * @param width the width of the framebuffer in pixels
+     * @param height the height of the framebuffer in pixels
+     */
+    public Framebuffer(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Create a new framebuffer. All the pixels start transparent, and the whole framebuffer is dirty.
+     *
+     * @param width the width of the framebuffer in pixels
+     * @param height the height of the framebuffer in pixels
+     * @param direct whether the pixels live in direct memory, as needed to present them through a PixelBuffer
+     */
+    public Framebuffer(int width, int height, boolean direct) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Framebuffer size must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        if (direct) {
+            this.pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+            this.array = null;
+        } else {
+            this.array = new int[width * height];
+            this.pixels = IntBuffer.wrap(array);
+        }
+        this.dirty_columns = (width + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE;
+        this.dirty = new boolean[dirty_columns * ((height + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE)];
+        Arrays.fill(dirty, true);
+    }
+
+    /**
+     * Fill the whole framebuffer with a single color.
+     *
+     * @param color the ARGB color to fill the framebuffer with
+     */
+    public void clear(int color) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                setPixel(x, y, color);
+            }
+        }
+    }
+
+    /**
+     * Write a pixel. Different threads can write different pixels at the same time.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @param color the ARGB color of the pixel
+     */
+    public void setPixel(int x, int y, int color) {
+        int index = y * width + x;
+        if (pixels.get(index) != color) {
+            pixels.put(index, color);
+            dirty[(y / DIRTY_TILE_SIZE) * dirty_columns + x / DIRTY_TILE_SIZE] = true;
+        }
+    }
+
+    /**
+     * Write a run of pixels of a row. The pixels are compared and copied one dirty tile at a time,
+     * so that only the tiles whose content changed are marked as changed.
+     * Different threads can write different pixels at the same time.
+     *
+     * @param x the x-coordinate of the first pixel
+     * @param y the y-coordinate of the row
+     * @param source the ARGB colors of the pixels
+     * @param offset the index of the first color in the source
+     * @param length the number of pixels to write
+     */
+    public void setPixels(int x, int y, int[] source, int offset, int length) {
+        int index = y * width + x;
+        int dirty_row = (y / DIRTY_TILE_SIZE) * dirty_columns;
+        int end = x + length;
+        while (x < end) {
+            int count = Math.min(end, (x / DIRTY_TILE_SIZE + 1) * DIRTY_TILE_SIZE) - x;
+            boolean same;
+            if (array != null) {
+                same = Arrays.equals(array, index, index + count, source, offset, offset + count);
+                if (!same) {
+                    System.arraycopy(source, offset, array, index, count);
+                }
+            } else {
+                int[] segment = SEGMENTS.get();
+                pixels.get(index, segment, 0, count);
+                same = Arrays.equals(segment, 0, count, source, offset, offset + count);
+                if (!same) {
+                    pixels.put(index, source, offset, count);
+                }
+            }
+            if (!same) {
+                dirty[dirty_row + x / DIRTY_TILE_SIZE] = true;
+            }
+            x += count;
+            index += count;
+            offset += count;
+        }
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels.get(y * width + x);
+    }
+
+    /**
+     * Get the bounds of the pixels that changed since the last call, and mark every pixel as unchanged.
+     * This must not be called while the framebuffer is being written.
+     *
+     * @return the changed region as [x, y, width, height], or null if no pixel changed
+     */
+    public int[] takeDirtyRegion() {
+        int min_column = Integer.MAX_VALUE;
+        int min_row = Integer.MAX_VALUE;
+        int max_column = -1;
+        int max_row = -1;
+        for (int i = 0; i < dirty.length; i++) {
+            if (!dirty[i]) {
+                continue;
+            }
+            dirty[i] = false;
+            int column = i % dirty_columns;
+            int row = i / dirty_columns;
+            min_column = Math.min(min_column, column);
+            min_row = Math.min(min_row, row);
+            max_column = Math.max(max_column, column);
+            max_row = Math.max(max_row, row);
+        }
+        if (max_column < 0) {
+            return null;
+        }
+        int x = min_column * DIRTY_TILE_SIZE;
+        int y = min_row * DIRTY_TILE_SIZE;
+        return new int[] { x, y, Math.min((max_column + 1) * DIRTY_TILE_SIZE, width) - x,
+                Math.min((max_row + 1) * DIRTY_TILE_SIZE, height) - y };
+    }
+
+    // Getters
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the buffer holding the pixels, a direct buffer if the framebuffer was created as direct
+     */
+    public IntBuffer getBuffer() {
+        return pixels;
+    }
+
+}
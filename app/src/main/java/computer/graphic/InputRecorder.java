@@ -0,0 +1,178 @@
+package computer.graphic;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The InputRecorder class records the camera movement states of every frame to a file,
+ * so that a session can be replayed exactly by the Benchmark.
+ *
+ * A recording is a text file. The header holds the size of the world and the pose of the camera
+ * when the recording started, then every frame is a line of 0 and 1, one character per movement state,
+ * in the order of App.INPUT_STATES.
+ * Whether the camera collides with the world (Camera.COLLISION_ENABLED) changes the path of the camera,
+ * so a "collision" line is written before the first frame and before every frame where it changed.
+ * Recordings without "collision" lines are replayed without collisions.
+ *
+ * <pre>
+ * # cuberender input recording
+ * world 20
+ * pose 475.0 475.0 -400.0 0.0 0.0 1.0 0.0 1.0 0.0
+ * collision 0
+ * 1000000000
+ * collision 1
+ * 1000000001
+ * </pre>
+ */
+public class InputRecorder implements AutoCloseable {
+
+    private static final String HEADER = "# cuberender input recording";
+
+    private final BufferedWriter writer;
+    private int frames = 0;
+
+    // The collision state written last, or null before the first frame
+    private Boolean collision;
+
+    /**
+     * Start a new recording. The world size and the current pose of the camera are written to the header.
+     *
+     * @param path the file to record to
+     * @param camera the camera whose starting pose is recorded
+     * @throws IOException if the file cannot be written
+     */
+    public InputRecorder(Path path, Camera camera) throws IOException {
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+        writer.newLine();
+        writer.write("world " + Simulation.WORLD_SIZE);
+        writer.newLine();
+        StringBuilder pose = new StringBuilder("pose");
+        for (double[] vector : new double[][] { camera.getPosition(), camera.getSurface_normal(),
+                camera.getUp_vector() }) {
+            for (double value : vector) {
+                pose.append(' ').append(value);
+            }
+        }
+        writer.write(pose.toString());
+        writer.newLine();
+    }
+
+    /**
+     * Record the movement states of one frame.
+     *
+     * @param states the movement states, in the order of App.INPUT_STATES
+     * @param collision whether the camera collides with the world during this frame
+     * @throws IOException if the file cannot be written
+     */
+    public void record(boolean[] states, boolean collision) throws IOException {
+        if (this.collision == null || this.collision != collision) {
+            writer.write("collision " + (collision ? 1 : 0));
+            writer.newLine();
+            this.collision = collision;
+        }
+        char[] line = new char[states.length];
+        for (int i = 0; i < states.length; i++) {
+            line[i] = states[i] ? '1' : '0';
+        }
+        writer.write(line);
+        writer.newLine();
+        frames++;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * A recording loaded from a file.
+     */
+    public static class Recording {
+        public int world_size;
+        public double[] position;
+        public double[] surface_normal;
+        public double[] up_vector;
+        public List<boolean[]> frames = new ArrayList<boolean[]>();
+
+        // Whether the camera collides with the world during each frame
+        public List<Boolean> collision = new ArrayList<Boolean>();
+    }
+
+    /**
+     * Load a recording from a file.
+     *
+     * @param path the file to load
+     * @return the recording
+     * @throws IOException if the file cannot be read or is not a valid recording
+     */
+    public static Recording load(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IOException("Not an input recording: " + path);
+        }
+
+        Recording recording = new Recording();
+        boolean collision = false;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                if (line.startsWith("world ")) {
+                    recording.world_size = Integer.parseInt(line.substring(6).trim());
+                } else if (line.startsWith("pose ")) {
+                    String[] values = line.substring(5).trim().split("\\s+");
+                    if (values.length != 9) {
+                        throw new IOException("Line " + (i + 1) + ": a pose must have 9 values");
+                    }
+                    double[] pose = new double[9];
+                    for (int j = 0; j < 9; j++) {
+                        pose[j] = Double.parseDouble(values[j]);
+                    }
+                    recording.position = new double[] { pose[0], pose[1], pose[2] };
+                    recording.surface_normal = new double[] { pose[3], pose[4], pose[5] };
+                    recording.up_vector = new double[] { pose[6], pose[7], pose[8] };
+                } else if (line.startsWith("collision ")) {
+                    String value = line.substring(10).trim();
+                    if (!value.equals("0") && !value.equals("1")) {
+                        throw new IOException("Line " + (i + 1) + ": the collision state must be 0 or 1");
+                    }
+                    collision = value.equals("1");
+                } else {
+                    if (line.length() != App.INPUT_STATES.length) {
+                        throw new IOException("Line " + (i + 1) + ": expected " + App.INPUT_STATES.length
+                                + " movement states");
+                    }
+                    boolean[] states = new boolean[line.length()];
+                    for (int j = 0; j < line.length(); j++) {
+                        char c = line.charAt(j);
+                        if (c != '0' && c != '1') {
+                            throw new IOException("Line " + (i + 1) + ": movement states must be 0 or 1");
+                        }
+                        states[j] = c == '1';
+                    }
+                    recording.frames.add(states);
+                    recording.collision.add(collision);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if (recording.position == null) {
+            throw new IOException("The recording has no starting pose: " + path);
+        }
+        return recording;
+    }
+
+}
@@ -0,0 +1,600 @@
+package computer.graphic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The OcclusionCuller class finds the cubes that are hidden behind other cubes, so that the renderer
+ * does not have to process their edges at all.
+ *
+ * Each frame, the cells of the world are visited from front to back. A cube is hidden if its nearest point
+ * is farther than the farthest depth over its screen bounds in a low resolution depth buffer. The test reads
+ * a hierarchical depth buffer (hierarchical-Z), where each texel holds the farthest depth of the texels below it,
+ * so that it only needs a few texel reads at the right level of the hierarchy.
+ * The silhouettes of the nearest visible cubes are rasterized into the depth buffer as occluders for the cubes
+ * behind them, and the hierarchy is only updated over the screen bounds of each new occluder. The far cubes,
+ * which cover less than a texel each, are grown into blocks of solid cubes first, so that they still occlude.
+ *
+ * Depths are the distances along the camera's surface normal, the same as the z used in the perspective
+ * projection of the Renderer. Occluders use the depth of their farthest corner, and only cover the texels that
+ * are entirely inside their silhouette, so the test never hides a visible cube.
+ */
+public class OcclusionCuller {
+
+    /**
+     * The resolution of the depth buffer.
+     */
+    public static int DEPTH_WIDTH = 160;
+    public static int DEPTH_HEIGHT = 120;
+
+    /**
+     * The maximum number of visible cubes rasterized into the depth buffer as occluders.
+     * Since the cubes are processed from front to back, these are the nearest visible cubes.
+     */
+    public static int OCCLUDER_COUNT = 4096;
+
+    /**
+     * The occluders whose cube spans fewer texels than this on screen grow into the largest block of solid cubes
+     * around them, up to OCCLUDER_CELLS cells along each axis. A far cube covers almost no texel on its own,
+     * but a block of them still hides what is behind it.
+     */
+    public static double OCCLUDER_GROWTH_TEXELS = 4;
+    public static int OCCLUDER_CELLS = 8;
+
+    /**
+     * Cubes with a vertex closer than this distance to the camera plane are always considered visible,
+     * and are never used as occluders.
+     */
+    public static double NEAR_PLANE = 1;
+
+    // The hierarchical depth buffer, level 0 has the full resolution
+    private float[][] levels;
+    private int[] level_widths;
+    private int[] level_heights;
+
+    // The camera basis of the current frame
+    private double[] position;
+    private double[] surface_normal;
+    private double[] up_vector;
+    private double[] right_vector;
+    private double screen_width;
+    private double screen_height;
+
+    // The occupied cells from front to back, kept until the camera moves to another cell or the world changes
+    private int[] order = new int[0];
+    private int order_length;
+    private int[] distance_counts = new int[0];
+    private Simulation order_world;
+    private long order_version;
+    private final int[] camera_cell = new int[3];
+    private final int[] order_cell = { -1, -1, -1 };
+
+    // The bounds of the box being tested or rasterized, and the cells of the grid covered by the current occluder
+    private final double[] box_min = new double[3];
+    private final double[] box_max = new double[3];
+    private final int[] cell_min = new int[3];
+    private final int[] cell_max = new int[3];
+    private final int[] layer = new int[3];
+
+    // The largest extent in texels of the last cube tested
+    private double footprint;
+
+    // Scratch buffers for the projected corners of a box: x and y in depth buffer coordinates, and depth
+    private final double[] corner_x = new double[8];
+    private final double[] corner_y = new double[8];
+    private final double[] corner_depth = new double[8];
+
+    // Scratch buffers for the silhouette of a projected box, and for the edge functions of a projected polygon
+    private final int[] camera_side = new int[3];
+    private final int[] face = new int[4];
+    private final int[] sorted = new int[8];
+    private final int[] hull = new int[9];
+    private final double[] edge_a = new double[8];
+    private final double[] edge_b = new double[8];
+    private final double[] edge_c = new double[8];
+
+    // The texels of the depth buffer changed by the last occluder
+    private int dirty_x0;
+    private int dirty_y0;
+    private int dirty_x1;
+    private int dirty_y1;
+
+    /**
+     * Find the cubes of the world that are not hidden behind other cubes.
+     *
+     * @param simulation the world to cull
+     * @param camera the camera the world is seen from
+     * @param screen_width the width of the screen in pixels
+     * @param screen_height the height of the screen in pixels
+     * @return the potentially visible cubes, ordered from front to back
+     */
+    public ArrayList<Cube> cull(Simulation simulation, Camera camera, double screen_width, double screen_height) {
+        this.position = camera.getPosition().clone();
+        this.surface_normal = camera.getSurface_normal().clone();
+        this.up_vector = camera.getUp_vector().clone();
+        this.right_vector = util.crossProduct(surface_normal, up_vector);
+        this.screen_width = screen_width;
+        this.screen_height = screen_height;
+        allocateLevels();
+
+        Cube[][][] world = simulation.getWorld();
+        int size = simulation.getSize();
+        frontToBack(simulation);
+
+        // Test the cubes from front to back, and rasterize the visible ones as occluders for the cubes behind them
+        Arrays.fill(levels[0], Float.POSITIVE_INFINITY);
+        buildHierarchy(0, 0, level_widths[0] - 1, level_heights[0] - 1);
+        ArrayList<Cube> visible = new ArrayList<Cube>();
+        int occluders = 0;
+        for (int i = 0; i < order_length; i++) {
+            int cell = order[i];
+            Cube cube = cellAt(world, size, cell);
+            if (!isVisible(cube)) {
+                continue;
+            }
+            visible.add(cube);
+            // Only solid cubes can hide what is behind them, other templates may have holes
+            if (occluders >= OCCLUDER_COUNT || cube.getTemplate() != Template.UNIT_CUBE) {
+                continue;
+            }
+            if (footprint < OCCLUDER_GROWTH_TEXELS) {
+                growOccluder(simulation, cell);
+            }
+            if (projectCorners() && rasterizeOccluder()) {
+                buildHierarchy(dirty_x0, dirty_y0, dirty_x1, dirty_y1);
+                occluders++;
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * Order the occupied cells of the grid from front to back, by their Manhattan distance in cells to the cell of
+     * the camera. The order is built with a counting sort, so it stays linear in the number of cells, and it is only
+     * rebuilt when the camera moves to another cell or the world changes.
+     * The cells are encoded as (x * size + y) * size + z.
+     */
+    private void frontToBack(Simulation simulation) {
+        int size = simulation.getSize();
+        double[] origin = simulation.getOrigin();
+        for (int i = 0; i < 3; i++) {
+            int index = (int) Math.floor((position[i] - origin[i]) / simulation.getCubeSize());
+            camera_cell[i] = Math.max(0, Math.min(size - 1, index));
+        }
+        if (simulation == order_world && simulation.getVersion() == order_version
+                && Arrays.equals(camera_cell, order_cell)) {
+            return;
+        }
+        order_world = simulation;
+        order_version = simulation.getVersion();
+        System.arraycopy(camera_cell, 0, order_cell, 0, 3);
+
+        Cube[][][] world = simulation.getWorld();
+        if (distance_counts.length < 3 * size) {
+            distance_counts = new int[3 * size];
+        }
+        Arrays.fill(distance_counts, 0);
+        order_length = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (world[x][y][z] != null) {
+                        distance_counts[distance(camera_cell, x, y, z)]++;
+                        order_length++;
+                    }
+                }
+            }
+        }
+        int offset = 0;
+        for (int i = 0; i < distance_counts.length; i++) {
+            int count = distance_counts[i];
+            distance_counts[i] = offset;
+            offset += count;
+        }
+
+        if (order.length < order_length) {
+            order = new int[order_length];
+        }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (world[x][y][z] != null) {
+                        order[distance_counts[distance(camera_cell, x, y, z)]++] = (x * size + y) * size + z;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int distance(int[] cell, int x, int y, int z) {
+        return Math.abs(x - cell[0]) + Math.abs(y - cell[1]) + Math.abs(z - cell[2]);
+    }
+
+    private static Cube cellAt(Cube[][][] world, int size, int cell) {
+        return world[cell / (size * size)][(cell / size) % size][cell % size];
+    }
+
+    /**
+     * Grow the box of an occluder from the cell of a solid cube, one layer of cells at a time, as long as the new layer
+     * is made of solid cubes and the box spans at most OCCLUDER_CELLS cells along each axis.
+     */
+    private void growOccluder(Simulation simulation, int cell) {
+        Cube[][][] world = simulation.getWorld();
+        int size = simulation.getSize();
+        cell_min[0] = cell_max[0] = cell / (size * size);
+        cell_min[1] = cell_max[1] = (cell / size) % size;
+        cell_min[2] = cell_max[2] = cell % size;
+
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (int axis = 0; axis < 3; axis++) {
+                if (cell_max[axis] - cell_min[axis] + 1 >= OCCLUDER_CELLS) {
+                    continue;
+                }
+                if (cell_max[axis] + 1 < size && isSolidLayer(world, axis, cell_max[axis] + 1)) {
+                    cell_max[axis]++;
+                    grown = true;
+                } else if (cell_min[axis] > 0 && isSolidLayer(world, axis, cell_min[axis] - 1)) {
+                    cell_min[axis]--;
+                    grown = true;
+                }
+            }
+        }
+
+        double[] origin = simulation.getOrigin();
+        double cube_size = simulation.getCubeSize();
+        for (int i = 0; i < 3; i++) {
+            box_min[i] = origin[i] + cell_min[i] * cube_size;
+            box_max[i] = origin[i] + (cell_max[i] + 1) * cube_size;
+        }
+    }
+
+    /**
+     * Check that the layer of cells at the given index along an axis, over the current box along the two other axes,
+     * only contains solid cubes.
+     */
+    private boolean isSolidLayer(Cube[][][] world, int axis, int index) {
+        int u = (axis + 1) % 3;
+        int v = (axis + 2) % 3;
+        layer[axis] = index;
+        for (layer[u] = cell_min[u]; layer[u] <= cell_max[u]; layer[u]++) {
+            for (layer[v] = cell_min[v]; layer[v] <= cell_max[v]; layer[v]++) {
+                Cube cube = world[layer[0]][layer[1]][layer[2]];
+                if (cube == null || cube.getTemplate() != Template.UNIT_CUBE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set the box to the bounding box of a cube.
+     */
+    private void setBox(Cube cube) {
+        double[] min = cube.getTemplate().getMin();
+        double[] max = cube.getTemplate().getMax();
+        double[] center = cube.getCenter();
+        for (int i = 0; i < 3; i++) {
+            box_min[i] = center[i] + cube.getSize() * min[i];
+            box_max[i] = center[i] + cube.getSize() * max[i];
+        }
+    }
+
+    /**
+     * Project the corners of the box into the depth buffer.
+     *
+     * @return true if every corner is in front of the near plane, false otherwise
+     */
+    private boolean projectCorners() {
+        double scale_x = level_widths[0] / screen_width;
+        double scale_y = level_heights[0] / screen_height;
+        boolean in_front = true;
+
+        for (int corner = 0; corner < 8; corner++) {
+            double vx = ((corner & 1) == 0 ? box_min[0] : box_max[0]) - position[0];
+            double vy = ((corner & 2) == 0 ? box_min[1] : box_max[1]) - position[1];
+            double vz = ((corner & 4) == 0 ? box_min[2] : box_max[2]) - position[2];
+
+            double z = vx * surface_normal[0] + vy * surface_normal[1] + vz * surface_normal[2];
+            corner_depth[corner] = z;
+            if (z < NEAR_PLANE) {
+                in_front = false;
+                continue;
+            }
+            double x = vx * right_vector[0] + vy * right_vector[1] + vz * right_vector[2];
+            double y = vx * up_vector[0] + vy * up_vector[1] + vz * up_vector[2];
+            corner_x[corner] = (Camera.FOCAL_LENGTH * x / z + screen_width / 2) * scale_x;
+            corner_y[corner] = (-Camera.FOCAL_LENGTH * y / z + screen_height / 2) * scale_y;
+        }
+        return in_front;
+    }
+
+    /**
+     * Rasterize the projected box of an occluder into the full resolution depth buffer.
+     * The box is made of solid cubes, so its silhouette, the convex hull of its projected corners, is exactly covered
+     * by the faces that look towards the camera. So everything behind the farthest corner of these faces is hidden
+     * inside the silhouette. Rasterizing the whole silhouette at once keeps the texels along the borders between
+     * the faces, which matters for the boxes that only cover a few texels. The faces that look towards the camera are then
+     * rasterized with their own farthest depth, which is nearer, so that they hide the cubes right behind them.
+     *
+     * @return true if the box brought at least one texel closer, false otherwise
+     */
+    private boolean rasterizeOccluder() {
+        dirty_x0 = Integer.MAX_VALUE;
+        dirty_y0 = Integer.MAX_VALUE;
+        dirty_x1 = Integer.MIN_VALUE;
+        dirty_y1 = Integer.MIN_VALUE;
+
+        // Find the side of the box the camera is on along each axis: 0 or 1 for the side of the corners
+        // whose bit is 0 or 1, or -1 if the camera is between the two faces
+        for (int i = 0; i < 3; i++) {
+            camera_side[i] = position[i] < box_min[i] ? 0 : position[i] > box_max[i] ? 1 : -1;
+        }
+
+        // Keep the farthest corner of the faces that look towards the camera.
+        // Round the depth up, so that the float depth is never nearer than these faces
+        double depth = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            for (int i = 0; i < 3; i++) {
+                if (camera_side[i] == ((corner >> i) & 1)) {
+                    depth = Math.max(depth, corner_depth[corner]);
+                    break;
+                }
+            }
+        }
+        boolean covered = rasterizePolygon(hull, silhouette(), Math.nextUp((float) depth));
+
+        for (int i = 0; i < 3; i++) {
+            if (camera_side[i] < 0) {
+                continue;
+            }
+            // The corners of the face on the camera side of axis i, in order around the face
+            int j = 1 << ((i + 1) % 3);
+            int k = 1 << ((i + 2) % 3);
+            int base = camera_side[i] << i;
+            face[0] = base;
+            face[1] = base | j;
+            face[2] = base | j | k;
+            face[3] = base | k;
+            double face_depth = Math.max(Math.max(corner_depth[face[0]], corner_depth[face[1]]),
+                    Math.max(corner_depth[face[2]], corner_depth[face[3]]));
+            if (face_depth < depth) {
+                covered |= rasterizePolygon(face, 4, Math.nextUp((float) face_depth));
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Find the convex hull of the projected corners, with the monotone chain algorithm.
+     * The corners of the hull are written to the hull buffer in order.
+     *
+     * @return the number of corners of the hull
+     */
+    private int silhouette() {
+        // Sort the corners by x, then by y
+        for (int i = 0; i < 8; i++) {
+            sorted[i] = i;
+        }
+        for (int i = 1; i < 8; i++) {
+            int corner = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && (corner_x[sorted[j]] > corner_x[corner]
+                    || (corner_x[sorted[j]] == corner_x[corner] && corner_y[sorted[j]] > corner_y[corner]))) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = corner;
+        }
+
+        // Build the lower and the upper chains
+        int count = 0;
+        for (int i = 0; i < 8; i++) {
+            while (count >= 2 && turn(hull[count - 2], hull[count - 1], sorted[i]) <= 0) {
+                count--;
+            }
+            hull[count++] = sorted[i];
+        }
+        int lower = count + 1;
+        for (int i = 6; i >= 0; i--) {
+            while (count >= lower && turn(hull[count - 2], hull[count - 1], sorted[i]) <= 0) {
+                count--;
+            }
+            hull[count++] = sorted[i];
+        }
+        // The last corner is the first one
+        return count - 1;
+    }
+
+    private double turn(int a, int b, int c) {
+        return (corner_x[b] - corner_x[a]) * (corner_y[c] - corner_y[a])
+                - (corner_y[b] - corner_y[a]) * (corner_x[c] - corner_x[a]);
+    }
+
+    /**
+     * Rasterize a convex polygon of projected corners with a constant depth, keeping the nearest depth of each texel.
+     * A texel is only covered when the whole texel is inside the polygon, so that the part of a texel outside of
+     * the polygon never hides what is behind it.
+     *
+     * @param corners the corners of the polygon, in order
+     * @param count the number of corners
+     * @param depth the depth of the polygon
+     */
+    private boolean rasterizePolygon(int[] corners, int count, float depth) {
+        int width = level_widths[0];
+        int height = level_heights[0];
+        float[] buffer = levels[0];
+        if (count < 3) {
+            return false;
+        }
+
+        // The sign of the area gives the winding of the polygon
+        double area = 0;
+        for (int i = 0; i < count; i++) {
+            int a = corners[i];
+            int b = corners[(i + 1) % count];
+            area += corner_x[a] * corner_y[b] - corner_x[b] * corner_y[a];
+        }
+        if (area == 0) {
+            return false;
+        }
+        double sign = area > 0 ? 1 : -1;
+
+        // The edge functions of the polygon, evaluated at the texel centers as
+        // w = a * x + b * y + c, minus half of the extent of the texel along the edge normal, so that
+        // w >= 0 at the center means that the four corners of the texel are inside
+        double min_x = Double.POSITIVE_INFINITY, min_y = Double.POSITIVE_INFINITY;
+        double max_x = Double.NEGATIVE_INFINITY, max_y = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int a = corners[i];
+            int b = corners[(i + 1) % count];
+            double ax = corner_x[a], ay = corner_y[a];
+            double bx = corner_x[b], by = corner_y[b];
+            edge_a[i] = -sign * (by - ay);
+            edge_b[i] = sign * (bx - ax);
+            edge_c[i] = -edge_a[i] * ax - edge_b[i] * ay - 0.5 * (Math.abs(edge_a[i]) + Math.abs(edge_b[i]));
+            min_x = Math.min(min_x, ax);
+            min_y = Math.min(min_y, ay);
+            max_x = Math.max(max_x, ax);
+            max_y = Math.max(max_y, ay);
+        }
+
+        int x0 = Math.max(0, (int) Math.floor(min_x));
+        int y0 = Math.max(0, (int) Math.floor(min_y));
+        int x1 = Math.min(width - 1, (int) Math.ceil(max_x));
+        int y1 = Math.min(height - 1, (int) Math.ceil(max_y));
+
+        boolean covered = false;
+        for (int y = y0; y <= y1; y++) {
+            double py = y + 0.5;
+            for (int x = x0; x <= x1; x++) {
+                double px = x + 0.5;
+                boolean inside = true;
+                for (int i = 0; i < count && inside; i++) {
+                    inside = edge_a[i] * px + edge_b[i] * py + edge_c[i] >= 0;
+                }
+                if (!inside) {
+                    continue;
+                }
+                int index = y * width + x;
+                if (depth < buffer[index]) {
+                    buffer[index] = depth;
+                    dirty_x0 = Math.min(dirty_x0, x);
+                    dirty_y0 = Math.min(dirty_y0, y);
+                    dirty_x1 = Math.max(dirty_x1, x);
+                    dirty_y1 = Math.max(dirty_y1, y);
+                    covered = true;
+                }
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Test a cube against the hierarchical depth buffer.
+     *
+     * @return false if the cube is entirely outside of the screen or hidden behind the occluders, true otherwise
+     */
+    private boolean isVisible(Cube cube) {
+        setBox(cube);
+        if (!projectCorners()) {
+            // The cube crosses the camera plane, it is drawn unless it is entirely behind the camera
+            footprint = Double.POSITIVE_INFINITY;
+            for (double depth : corner_depth) {
+                if (depth > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        double min_depth = Double.POSITIVE_INFINITY;
+        double min_x = Double.POSITIVE_INFINITY, min_y = Double.POSITIVE_INFINITY;
+        double max_x = Double.NEGATIVE_INFINITY, max_y = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 8; corner++) {
+            min_depth = Math.min(min_depth, corner_depth[corner]);
+            min_x = Math.min(min_x, corner_x[corner]);
+            min_y = Math.min(min_y, corner_y[corner]);
+            max_x = Math.max(max_x, corner_x[corner]);
+            max_y = Math.max(max_y, corner_y[corner]);
+        }
+        footprint = Math.max(max_x - min_x, max_y - min_y);
+
+        // Clamp the bounds to the depth buffer, and reject the cubes outside of the screen
+        int x0 = Math.max(0, (int) Math.floor(min_x));
+        int y0 = Math.max(0, (int) Math.floor(min_y));
+        int x1 = Math.min(level_widths[0] - 1, (int) Math.floor(max_x));
+        int y1 = Math.min(level_heights[0] - 1, (int) Math.floor(max_y));
+        if (x0 > x1 || y0 > y1) {
+            return false;
+        }
+
+        // Pick the level where the bounds span at most two texels on each axis
+        int level = 0;
+        while (level < levels.length - 1 && ((x1 >> level) - (x0 >> level) > 1 || (y1 >> level) - (y0 >> level) > 1)) {
+            level++;
+        }
+
+        float[] buffer = levels[level];
+        int width = level_widths[level];
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                if (buffer[y * width + x] >= min_depth) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Allocate the levels of the hierarchical depth buffer, if the resolution changed.
+     */
+    private void allocateLevels() {
+        if (levels != null && level_widths[0] == DEPTH_WIDTH && level_heights[0] == DEPTH_HEIGHT) {
+            return;
+        }
+        int count = 1;
+        while ((DEPTH_WIDTH >> (count - 1)) > 1 || (DEPTH_HEIGHT >> (count - 1)) > 1) {
+            count++;
+        }
+        levels = new float[count][];
+        level_widths = new int[count];
+        level_heights = new int[count];
+        for (int level = 0; level < count; level++) {
+            level_widths[level] = Math.max(1, (DEPTH_WIDTH + (1 << level) - 1) >> level);
+            level_heights[level] = Math.max(1, (DEPTH_HEIGHT + (1 << level) - 1) >> level);
+            levels[level] = new float[level_widths[level] * level_heights[level]];
+        }
+    }
+
+    /**
+     * Reduce each level of the depth buffer into the next one, keeping the farthest depth of each 2x2 block.
+     * Only the texels above the given bounds of the full resolution level are updated.
+     */
+    private void buildHierarchy(int x0, int y0, int x1, int y1) {
+        for (int level = 1; level < levels.length; level++) {
+            float[] source = levels[level - 1];
+            float[] target = levels[level];
+            int source_width = level_widths[level - 1];
+            int source_height = level_heights[level - 1];
+            int width = level_widths[level];
+            int height = level_heights[level];
+
+            for (int y = y0 >> level; y <= Math.min(y1 >> level, height - 1); y++) {
+                for (int x = x0 >> level; x <= Math.min(x1 >> level, width - 1); x++) {
+                    float depth = Float.NEGATIVE_INFINITY;
+                    for (int sy = y * 2; sy < Math.min(y * 2 + 2, source_height); sy++) {
+                        for (int sx = x * 2; sx < Math.min(x * 2 + 2, source_width); sx++) {
+                            depth = Math.max(depth, source[sy * source_width + sx]);
+                        }
+                    }
+                    target[y * width + x] = depth;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package computer.graphic;
+
+import java.util.stream.IntStream;
+
+/**
+ * The Picker class finds the cube under a point of the screen, or along any ray, for selection tooling.
+ *
+ * Queries walk the grid of the simulation with the same 3D-DDA as the RayCaster, so a query only visits the cells
+ * along the ray, and skips the empty chunks and the space around the world. A single query takes microseconds
+ * whatever the number of cubes, and batches of queries are run in parallel.
+ * The traversal reuses scratch buffers of the calling thread, so a query only allocates the Pick it returns.
+ * Like the renderers, queries read the world directly, so they must run on the thread that applies the edits.
+ *
+ * Screen coordinates are in pixels from the top left corner of the pane, the same convention as the Renderer:
+ * the center of the screen looks along the camera's surface normal.
+ */
+public class Picker {
+
+    /**
+     * The faces of a cube, named like the edges of the cube template: the front face is on the negative z side.
+     */
+    public enum Face {
+        LEFT, RIGHT, BOTTOM, TOP, FRONT, BACK;
+
+        /**
+         * Get the face with a given normal.
+         *
+         * @param axis the axis of the normal (0, 1, or 2)
+         * @param sign the direction of the normal along the axis (1 or -1)
+         * @return the face
+         */
+        public static Face of(int axis, int sign) {
+            return values()[axis * 2 + (sign > 0 ? 1 : 0)];
+        }
+    }
+
+    /**
+     * The result of a query.
+     */
+    public static class Pick {
+        // The cube that was hit, and the indices of its cell in the world
+        public Cube cube;
+        public int x;
+        public int y;
+        public int z;
+
+        // The face of the cube that was hit
+        public Face face;
+
+        // The distance from the origin of the ray to the hit point, and the hit point itself
+        public double distance;
+        public double[] point;
+
+        @Override
+        public String toString() {
+            return "cube (" + x + ", " + y + ", " + z + "), " + face + " face, at distance " + distance;
+        }
+    }
+
+    // The scratch buffers of the queries of a thread
+    private static class Query {
+        final RayCaster.RayHit hit = new RayCaster.RayHit();
+        final double[] direction = new double[3];
+    }
+
+    private static final ThreadLocal<Query> QUERIES = ThreadLocal.withInitial(Query::new);
+
+    /**
+     * Find the first cube along a ray. If the ray starts inside a cube, that cube is ignored.
+     *
+     * @param simulation the world to query
+     * @param origin the origin of the ray
+     * @param direction the direction of the ray, it does not need to be normalized
+     * @return the first cube hit by the ray, or null if there is none
+     */
+    public static Pick pickRay(Simulation simulation, double[] origin, double[] direction) {
+        Query query = QUERIES.get();
+        query.direction[0] = direction[0];
+        query.direction[1] = direction[1];
+        query.direction[2] = direction[2];
+        return trace(simulation, origin, query);
+    }
+
+    /**
+     * Normalize the direction of a query and cast its ray.
+     */
+    private static Pick trace(Simulation simulation, double[] origin, Query query) {
+        double[] direction = query.direction;
+        double length = Math.sqrt(util.dotProduct(direction, direction));
+        if (length == 0) {
+            throw new IllegalArgumentException("The direction of a ray must not be zero");
+        }
+        direction[0] /= length;
+        direction[1] /= length;
+        direction[2] /= length;
+
+        RayCaster.RayHit hit = query.hit;
+        if (!RayCaster.trace(simulation, origin, direction, Double.POSITIVE_INFINITY, hit)) {
+            return null;
+        }
+
+        Pick pick = new Pick();
+        pick.cube = simulation.getWorld()[hit.x][hit.y][hit.z];
+        pick.x = hit.x;
+        pick.y = hit.y;
+        pick.z = hit.z;
+        pick.face = Face.of(hit.face_axis, hit.face_sign);
+        pick.distance = hit.distance;
+        pick.point = hit.point.clone();
+        return pick;
+    }
+
+    /**
+     * Find the cube the camera is looking at, along its surface normal.
+     *
+     * @param simulation the world to query
+     * @param camera the camera
+     * @return the first cube in front of the camera, or null if there is none
+     */
+    public static Pick pickForward(Simulation simulation, Camera camera) {
+        return pickRay(simulation, camera.getPosition(), camera.getSurface_normal());
+    }
+
+    /**
+     * Find the cube under a point of the screen.
+     *
+     * @param simulation the world to query
+     * @param camera the camera the screen is seen from
+     * @param screen_x the x-coordinate of the point, from the left of the screen
+     * @param screen_y the y-coordinate of the point, from the top of the screen
+     * @param screen_width the width of the screen
+     * @param screen_height the height of the screen
+     * @return the first cube under the point, or null if there is none
+     */
+    public static Pick pickScreen(Simulation simulation, Camera camera, double screen_x, double screen_y,
+            double screen_width, double screen_height) {
+        Query query = QUERIES.get();
+        screenDirection(camera, screen_x, screen_y, screen_width, screen_height, query.direction);
+        return trace(simulation, camera.getPosition(), query);
+    }
+
+    /**
+     * Find the cubes under many points of the screen. The queries are run in parallel.
+     *
+     * @param simulation the world to query
+     * @param camera the camera the screen is seen from
+     * @param points the points, each represented by [x, y] from the top left corner of the screen
+     * @param screen_width the width of the screen
+     * @param screen_height the height of the screen
+     * @return the first cube under each point, or null for the points where there is none
+     */
+    public static Pick[] pickScreen(Simulation simulation, Camera camera, double[][] points, double screen_width,
+            double screen_height) {
+        double[] origin = camera.getPosition().clone();
+        Camera snapshot = new Camera();
+        snapshot.setPosition(origin);
+        snapshot.setSurface_normal(camera.getSurface_normal().clone());
+        snapshot.setUp_vector(camera.getUp_vector().clone());
+
+        Pick[] picks = new Pick[points.length];
+        IntStream.range(0, points.length).parallel().forEach(i -> {
+            Query query = QUERIES.get();
+            screenDirection(snapshot, points[i][0], points[i][1], screen_width, screen_height, query.direction);
+            picks[i] = trace(simulation, origin, query);
+        });
+        return picks;
+    }
+
+    /**
+     * Find the cubes along many rays. The queries are run in parallel.
+     *
+     * @param simulation the world to query
+     * @param origins the origins of the rays
+     * @param directions the directions of the rays
+     * @return the first cube hit by each ray, or null for the rays that hit nothing
+     */
+    public static Pick[] pickRays(Simulation simulation, double[][] origins, double[][] directions) {
+        if (origins.length != directions.length) {
+            throw new IllegalArgumentException("Each ray must have an origin and a direction");
+        }
+        Pick[] picks = new Pick[origins.length];
+        IntStream.range(0, origins.length).parallel().forEach(i -> {
+            picks[i] = pickRay(simulation, origins[i], directions[i]);
+        });
+        return picks;
+    }
+
+    /**
+     * Get the direction of the ray going from the camera through a point of the screen.
+     * This is the inverse of the perspective projection of the Renderer.
+     */
+    private static void screenDirection(Camera camera, double screen_x, double screen_y, double screen_width,
+            double screen_height, double[] direction) {
+        double x = screen_x - screen_width / 2;
+        double y = screen_height / 2 - screen_y;
+        double[] n = camera.getSurface_normal();
+        double[] u = camera.getUp_vector();
+
+        // The right vector is surface_normal x up_vector
+        double right_x = n[1] * u[2] - n[2] * u[1];
+        double right_y = n[2] * u[0] - n[0] * u[2];
+        double right_z = n[0] * u[1] - n[1] * u[0];
+
+        direction[0] = Camera.FOCAL_LENGTH * n[0] + x * right_x + y * u[0];
+        direction[1] = Camera.FOCAL_LENGTH * n[1] + x * right_y + y * u[1];
+        direction[2] = Camera.FOCAL_LENGTH * n[2] + x * right_z + y * u[2];
+    }
+
+}
@@ -0,0 +1,316 @@
+package computer.graphic;
+
+import java.util.stream.IntStream;
+
+/**
+ * The RayCaster class renders the world by casting one ray per pixel through the grid of the simulation.
+ *
+ * Instead of projecting every edge of every cube, each ray walks the grid cell by cell with a 3D-DDA
+ * (Amanatides and Woo) until it reaches an occupied cell, so the cost depends on the number of pixels
+ * rather than on the number of cubes, and only the visible faces end up on the screen.
+ * Rays skip the space outside of the world in one step, and skip whole chunks when the chunk is empty.
+ *
+ * The rays follow the same camera model as the Renderer: a pixel at the centered screen coordinates
+ * (x, y) looks in the direction FOCAL_LENGTH * surface_normal + x * right_vector + y * up_vector.
+ */
+public class RayCaster {
+
+    /**
+     * The ARGB color of the pixels where the rays do not hit anything.
+     */
+    public static int BACKGROUND_COLOR = 0xFFFFFFFF;
+
+    /**
+     * The ARGB color of the faces, before shading.
+     */
+    public static int FACE_COLOR = 0xFFFF0000;
+
+    /**
+     * The ARGB color of the outlines of the faces.
+     */
+    public static int EDGE_COLOR = 0xFF000000;
+
+    /**
+     * The width of the outlines, as a fraction of the size of a cube.
+     * Set to 0 to only draw shaded faces.
+     */
+    public static double EDGE_WIDTH = 0.03;
+
+    /**
+     * Whether the faces are shaded depending on their orientation.
+     * If false, only the outlines are drawn on top of the background.
+     */
+    public static boolean SHADE_FACES = true;
+
+    // The brightness of the faces facing the x, y, and z axes
+    private static final double[] FACE_SHADES = { 0.75, 1.0, 0.55 };
+
+    /**
+     * The result of a ray cast. A RayHit also holds the scratch buffers of the traversal,
+     * so that casting many rays with the same RayHit does not allocate anything.
+     * A RayHit must not be shared between threads.
+     */
+    public static class RayHit {
+        // The indices of the cell that was hit
+        public int x;
+        public int y;
+        public int z;
+
+        // The axis of the face that was hit (0, 1, or 2), and the direction of the face's normal along that axis
+        // (1 or -1). The cell the ray starts in is skipped, so the ray always enters the cell it hits through a face.
+        public int face_axis;
+        public int face_sign;
+
+        // The distance along the ray to the hit point, and the hit point itself
+        public double distance;
+        public final double[] point = new double[3];
+
+        // Scratch buffers of the traversal
+        private final int[] cell = new int[3];
+        private final int[] step = new int[3];
+        private final int[] chunk = new int[3];
+        private final double[] t_max = new double[3];
+        private final double[] t_delta = new double[3];
+    }
+
+    /**
+     * Render the world as seen from a camera into a framebuffer.
+     * The scanlines are rendered in parallel.
+     *
+     * @param simulation the world to render
+     * @param camera the camera to render from
+     * @param framebuffer the framebuffer to render into
+     */
+    public static void render(Simulation simulation, Camera camera, Framebuffer framebuffer) {
+        int width = framebuffer.getWidth();
+        int height = framebuffer.getHeight();
+
+        double[] position = camera.getPosition().clone();
+        double[] surface_normal = camera.getSurface_normal().clone();
+        double[] up_vector = camera.getUp_vector().clone();
+        double[] right_vector = util.crossProduct(surface_normal, up_vector);
+        double focal_length = Camera.FOCAL_LENGTH;
+
+        IntStream.range(0, height).parallel().forEach(py -> {
+            RayHit hit = new RayHit();
+            double[] direction = new double[3];
+            double y = -(py + 0.5) + height / 2.0;
+
+            for (int px = 0; px < width; px++) {
+                double x = px + 0.5 - width / 2.0;
+                for (int i = 0; i < 3; i++) {
+                    direction[i] = focal_length * surface_normal[i] + x * right_vector[i] + y * up_vector[i];
+                }
+                normalize(direction);
+
+                int color = BACKGROUND_COLOR;
+                if (trace(simulation, position, direction, Double.POSITIVE_INFINITY, hit)) {
+                    color = shade(simulation, hit);
+                }
+                framebuffer.setPixel(px, py, color);
+            }
+        });
+    }
+
+    /**
+     * Cast a ray through the grid of the simulation and find the first cube it hits.
+     * If the ray starts inside a cube, that cube is ignored, so that a camera placed inside a cube
+     * still sees its surroundings.
+     *
+     * @param simulation the world to cast the ray in
+     * @param origin the origin of the ray
+     * @param direction the normalized direction of the ray
+     * @param max_distance the maximum distance along the ray
+     * @param hit the result of the cast, only valid if the ray hit a cube, and the scratch buffers of the traversal
+     * @return true if the ray hit a cube, false otherwise
+     */
+    public static boolean trace(Simulation simulation, double[] origin, double[] direction, double max_distance,
+            RayHit hit) {
+        int size = simulation.getSize();
+        int chunk_size = simulation.getChunkSize();
+        double cube_size = simulation.getCubeSize();
+        double[] grid_origin = simulation.getOrigin();
+
+        // Clip the ray to the bounds of the world, skipping the empty space around it
+        double t_enter = 0;
+        double t_exit = max_distance;
+        int axis = -1;
+        for (int i = 0; i < 3; i++) {
+            double min = grid_origin[i];
+            double max = grid_origin[i] + size * cube_size;
+            if (direction[i] == 0) {
+                if (origin[i] < min || origin[i] > max) {
+                    return false;
+                }
+                continue;
+            }
+            double t1 = (min - origin[i]) / direction[i];
+            double t2 = (max - origin[i]) / direction[i];
+            if (t1 > t2) {
+                double temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            if (t1 > t_enter) {
+                t_enter = t1;
+                axis = i;
+            }
+            t_exit = Math.min(t_exit, t2);
+        }
+        if (t_enter > t_exit) {
+            return false;
+        }
+
+        // Set up the traversal
+        int[] cell = hit.cell;
+        int[] step = hit.step;
+        int[] chunk = hit.chunk;
+        double[] t_max = hit.t_max;
+        double[] t_delta = hit.t_delta;
+        for (int i = 0; i < 3; i++) {
+            step[i] = direction[i] > 0 ? 1 : -1;
+            t_delta[i] = direction[i] == 0 ? Double.POSITIVE_INFINITY : cube_size / Math.abs(direction[i]);
+            double coordinate = (origin[i] + t_enter * direction[i] - grid_origin[i]) / cube_size;
+            cell[i] = Math.max(0, Math.min(size - 1, (int) Math.floor(coordinate)));
+        }
+        if (axis >= 0) {
+            // Entering from outside of the world, the entry axis is exactly on the first layer of cells
+            cell[axis] = step[axis] > 0 ? 0 : size - 1;
+        }
+        updateTMax(origin, direction, grid_origin, cube_size, cell, step, t_max);
+
+        double t = t_enter;
+        boolean starting_cell = axis < 0;
+
+        while (t <= t_exit) {
+            // Skip the whole chunk if it is empty
+            chunk[0] = cell[0] / chunk_size;
+            chunk[1] = cell[1] / chunk_size;
+            chunk[2] = cell[2] / chunk_size;
+            if (simulation.isChunkEmpty(chunk[0], chunk[1], chunk[2])) {
+                double t_chunk = Double.POSITIVE_INFINITY;
+                int exit_axis = 0;
+                for (int i = 0; i < 3; i++) {
+                    if (direction[i] == 0) {
+                        continue;
+                    }
+                    int boundary = step[i] > 0 ? Math.min((chunk[i] + 1) * chunk_size, size) : chunk[i] * chunk_size;
+                    double t_boundary = (grid_origin[i] + boundary * cube_size - origin[i]) / direction[i];
+                    if (t_boundary < t_chunk) {
+                        t_chunk = t_boundary;
+                        exit_axis = i;
+                    }
+                }
+
+                // Enter the next chunk, keeping the other axes inside the chunk to avoid rounding errors
+                for (int i = 0; i < 3; i++) {
+                    int first = chunk[i] * chunk_size;
+                    int last = Math.min(first + chunk_size, size) - 1;
+                    if (i == exit_axis) {
+                        cell[i] = step[i] > 0 ? last + 1 : first - 1;
+                    } else {
+                        double coordinate = (origin[i] + t_chunk * direction[i] - grid_origin[i]) / cube_size;
+                        cell[i] = Math.max(first, Math.min(last, (int) Math.floor(coordinate)));
+                    }
+                }
+                if (cell[exit_axis] < 0 || cell[exit_axis] >= size) {
+                    return false;
+                }
+                t = t_chunk;
+                axis = exit_axis;
+                starting_cell = false;
+                updateTMax(origin, direction, grid_origin, cube_size, cell, step, t_max);
+                continue;
+            }
+
+            if (!starting_cell && simulation.isOccupied(cell[0], cell[1], cell[2])) {
+                if (t > max_distance) {
+                    return false;
+                }
+                hit.x = cell[0];
+                hit.y = cell[1];
+                hit.z = cell[2];
+                hit.face_axis = axis;
+                hit.face_sign = -step[axis];
+                hit.distance = t;
+                for (int i = 0; i < 3; i++) {
+                    hit.point[i] = origin[i] + t * direction[i];
+                }
+                return true;
+            }
+            starting_cell = false;
+
+            // Step to the next cell along the axis with the closest boundary
+            axis = 0;
+            if (t_max[1] < t_max[axis]) {
+                axis = 1;
+            }
+            if (t_max[2] < t_max[axis]) {
+                axis = 2;
+            }
+            t = t_max[axis];
+            cell[axis] += step[axis];
+            t_max[axis] += t_delta[axis];
+            if (cell[axis] < 0 || cell[axis] >= size) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the distance along the ray to the next cell boundary on each axis.
+     */
+    private static void updateTMax(double[] origin, double[] direction, double[] grid_origin, double cube_size,
+            int[] cell, int[] step, double[] t_max) {
+        for (int i = 0; i < 3; i++) {
+            if (direction[i] == 0) {
+                t_max[i] = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double boundary = grid_origin[i] + (cell[i] + (step[i] > 0 ? 1 : 0)) * cube_size;
+            t_max[i] = (boundary - origin[i]) / direction[i];
+        }
+    }
+
+    /**
+     * Compute the color of a hit point: an outline near the edges of the face, and a shaded face elsewhere.
+     */
+    private static int shade(Simulation simulation, RayHit hit) {
+        double cube_size = simulation.getCubeSize();
+        double[] grid_origin = simulation.getOrigin();
+
+        // Find how close the hit point is to the border of the face
+        if (EDGE_WIDTH > 0) {
+            double border = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < 3; i++) {
+                if (i == hit.face_axis) {
+                    continue;
+                }
+                int cell = i == 0 ? hit.x : i == 1 ? hit.y : hit.z;
+                double local = hit.point[i] - (grid_origin[i] + cell * cube_size);
+                border = Math.min(border, Math.min(local, cube_size - local));
+            }
+            if (border < EDGE_WIDTH * cube_size) {
+                return EDGE_COLOR;
+            }
+        }
+
+        if (!SHADE_FACES) {
+            return BACKGROUND_COLOR;
+        }
+        double shade = FACE_SHADES[hit.face_axis];
+        int red = (int) (((FACE_COLOR >> 16) & 0xFF) * shade);
+        int green = (int) (((FACE_COLOR >> 8) & 0xFF) * shade);
+        int blue = (int) ((FACE_COLOR & 0xFF) * shade);
+        return (FACE_COLOR & 0xFF000000) | (red << 16) | (green << 8) | blue;
+    }
+
+    private static void normalize(double[] vector) {
+        double length = Math.sqrt(util.dotProduct(vector, vector));
+        vector[0] /= length;
+        vector[1] /= length;
+        vector[2] /= length;
+    }
+
+}
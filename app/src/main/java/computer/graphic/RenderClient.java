@@ -0,0 +1,143 @@
+package computer.graphic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The RenderClient class is a minimal client of the RenderServer, used to test the server and as an example
+ * of the protocol. See RenderServer for the description of the protocol.
+ */
+public class RenderClient implements AutoCloseable {
+
+    /**
+     * The status of a response that was accepted by the server, but whose rendering failed.
+     * The frames received before the failure are kept in the response.
+     */
+    public static final int STATUS_FAILED = -1;
+
+    /**
+     * The response to a request.
+     */
+    public static class Response {
+        // The status of the response, or STATUS_FAILED if the server failed to render the request
+        public int status;
+        public List<byte[]> frames = new ArrayList<byte[]>();
+        public long latency_nanos;
+    }
+
+    private final SocketChannel channel;
+    private final DataInputStream input;
+    private final DataOutputStream output;
+
+    /**
+     * Connect to a render server.
+     *
+     * @param address the address of the server, see RenderServer.parseAddress
+     * @throws IOException if the connection fails
+     */
+    public RenderClient(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(address);
+        } else {
+            channel = SocketChannel.open(address);
+        }
+        input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Send a batch of camera poses and wait for all of their frames.
+     *
+     * @param world_id the id of the world to render
+     * @param width the width of the frames
+     * @param height the height of the frames
+     * @param poses the camera poses, each made of 9 values: position, surface normal, and up vector
+     * @return the response of the server
+     * @throws IOException if the connection fails
+     */
+    public Response render(String world_id, int width, int height, List<double[]> poses) throws IOException {
+        output.writeUTF(world_id);
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(poses.size());
+        for (double[] pose : poses) {
+            if (pose.length != 9) {
+                throw new IllegalArgumentException("A pose must have 9 values");
+            }
+            for (double value : pose) {
+                output.writeDouble(value);
+            }
+        }
+        output.flush();
+
+        Response response = new Response();
+        response.status = input.readInt();
+        if (response.status != RenderServer.STATUS_OK) {
+            return response;
+        }
+        for (int i = 0; i < poses.size(); i++) {
+            int length = input.readInt();
+            if (length == RenderServer.FRAME_FAILED) {
+                response.status = STATUS_FAILED;
+                return response;
+            }
+            byte[] frame = new byte[length];
+            input.readFully(frame);
+            response.frames.add(frame);
+        }
+        response.latency_nanos = input.readLong();
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Render a turn around the default world and write the frames to the current directory.
+     *
+     * Usage: RenderClient [address] [frame count]
+     */
+    public static void main(String[] args) throws IOException {
+        SocketAddress address = RenderServer.parseAddress(args.length > 0 ? args[0]
+                : String.valueOf(RenderServer.DEFAULT_PORT));
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        List<double[]> poses = new ArrayList<double[]>();
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            double[] position = { 300 * Math.sin(angle), 0, -300 * Math.cos(angle) };
+            poses.add(new double[] { position[0], position[1], position[2], -Math.sin(angle), 0, Math.cos(angle), 0,
+                    1, 0 });
+        }
+
+        try (RenderClient client = new RenderClient(address)) {
+            Response response = client.render("default", 320, 240, poses);
+            if (response.status != RenderServer.STATUS_OK) {
+                System.err.println("The server answered with status " + response.status);
+                System.exit(1);
+            }
+            for (int i = 0; i < response.frames.size(); i++) {
+                Files.write(Path.of(String.format(Locale.ROOT, "frame-%03d.ppm", i)), response.frames.get(i));
+            }
+            System.out.println(String.format(Locale.ROOT, "Received %d frames in %.3f ms", response.frames.size(),
+                    response.latency_nanos / 1e6));
+        }
+    }
+
+}
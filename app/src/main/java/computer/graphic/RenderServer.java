@@ -0,0 +1,504 @@
+package computer.graphic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The RenderServer class renders views of warm worlds for other processes on the same host.
+ *
+ * The server listens on a loopback TCP port or on a Unix domain socket. A client sends a request made of a world id,
+ * a frame size, and a batch of camera poses, and the server streams back one encoded frame per pose.
+ * All requests go through a bounded queue to a single render thread, which drains every request waiting in the queue
+ * and renders the requests on the same world and frame size in one shared pass, rendering each distinct pose once.
+ * When the queue is full, the request is rejected immediately with STATUS_BUSY, so that clients can back off.
+ * A request is also limited to MAX_REQUEST_PIXELS pixels over all of its frames, and reserves the size of all of its
+ * encoded frames until it is answered. A request that would bring the frames of the requests being served above
+ * MAX_PENDING_BYTES is rejected with STATUS_BUSY too, so that the frames waiting to be sent stay within a known
+ * amount of memory whatever the number of connections.
+ *
+ * The frames are rendered with the RayCaster and encoded as binary PPM (P6) images.
+ *
+ * Protocol, all values big endian as written by DataOutputStream:
+ * <pre>
+ * request:  UTF world id, int width, int height, int pose count,
+ *           pose count * 9 doubles (position, surface normal, up vector)
+ * response: int status, then if the status is STATUS_OK:
+ *           pose count * (int length, length bytes of PPM image),
+ *           long latency in nanoseconds, from the request being read to its last frame being written and flushed
+ * </pre>
+ * If the rendering of a request fails, or its next frame is not ready within FRAME_TIMEOUT_SECONDS, the server
+ * sends FRAME_FAILED instead of the length of the next frame, and the response ends there, without a latency.
+ * A connection can send several requests one after the other.
+ */
+public class RenderServer implements AutoCloseable {
+
+    // Response statuses
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_BUSY = 1;
+    public static final int STATUS_UNKNOWN_WORLD = 2;
+    public static final int STATUS_BAD_REQUEST = 3;
+
+    /**
+     * The frame length sent in place of a frame when the rendering of a request failed.
+     */
+    public static final int FRAME_FAILED = -1;
+
+    /**
+     * The default TCP port of the server.
+     */
+    public static int DEFAULT_PORT = 7878;
+
+    /**
+     * The maximum number of requests waiting to be rendered.
+     */
+    public static int QUEUE_CAPACITY = 64;
+
+    /**
+     * The limits of a request.
+     */
+    public static int MAX_FRAME_SIZE = 4096;
+    public static int MAX_POSES = 256;
+    public static long MAX_REQUEST_PIXELS = 64L * 1024 * 1024;
+
+    /**
+     * The maximum size in bytes of the encoded frames of all the requests being served, rendered or not.
+     */
+    public static long MAX_PENDING_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * How long a connection waits for the next frame of its request before giving up on it.
+     */
+    public static long FRAME_TIMEOUT_SECONDS = 60;
+
+    /**
+     * Whether the latency of every request is printed to the console.
+     */
+    public static boolean LOG_LATENCY = true;
+
+    // Delivered to a request in place of a frame when its rendering failed
+    private static final byte[] FAILED = new byte[0];
+
+    // A request waiting to be rendered, with the queue its frames are delivered to
+    private static class Request {
+        final String world_id;
+        final int width;
+        final int height;
+        final double[][] poses;
+        final long received = System.nanoTime();
+        final LinkedBlockingQueue<byte[]> frames = new LinkedBlockingQueue<byte[]>();
+
+        // The number of frames delivered so far, only used by the render thread
+        int delivered = 0;
+
+        // Set when the connection gave up on the request, so that its remaining frames are not rendered
+        volatile boolean abandoned = false;
+
+        Request(String world_id, int width, int height, double[][] poses) {
+            this.world_id = world_id;
+            this.width = width;
+            this.height = height;
+            this.poses = poses;
+        }
+    }
+
+    private final Map<String, Simulation> worlds = new ConcurrentHashMap<String, Simulation>();
+    private final ArrayBlockingQueue<Request> queue;
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "render-server-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread render_thread;
+    private volatile boolean running = true;
+
+    // The bytes reserved by the requests being served
+    private final AtomicLong pending_bytes = new AtomicLong();
+
+    // The framebuffer of the last pass, reused by the next passes of the same frame size, only used by the render thread
+    private Framebuffer framebuffer;
+
+    // The number of frames rendered since the server started
+    private final AtomicLong rendered_frames = new AtomicLong();
+
+    /**
+     * Start a server listening on an address.
+     *
+     * @param address a loopback InetSocketAddress, or a UnixDomainSocketAddress
+     * @throws IOException if the server cannot listen on the address
+     */
+    public RenderServer(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null
+                && ((InetSocketAddress) address).getAddress().isLoopbackAddress()) {
+            server = ServerSocketChannel.open();
+        } else {
+            throw new IllegalArgumentException("The render server only listens on loopback or Unix domain sockets");
+        }
+        server.bind(address);
+        this.address = server.getLocalAddress();
+        this.queue = new ArrayBlockingQueue<Request>(QUEUE_CAPACITY);
+
+        render_thread = new Thread(this::renderLoop, "render-server-renderer");
+        render_thread.setDaemon(true);
+        render_thread.start();
+
+        Thread accept_thread = new Thread(this::acceptLoop, "render-server-accept");
+        accept_thread.setDaemon(true);
+        accept_thread.start();
+    }
+
+    /**
+     * Make a world available to the clients. The world stays in memory until the server is closed.
+     * Edits submitted to the world are applied by the render thread before the next pass on that world.
+     *
+     * @param id the id the clients use to refer to the world
+     * @param simulation the world
+     */
+    public void registerWorld(String id, Simulation simulation) {
+        worlds.put(id, simulation);
+    }
+
+    /**
+     * @return the number of frames rendered since the server started, identical poses rendered together count once
+     */
+    public long getRenderedFrames() {
+        return rendered_frames.get();
+    }
+
+    /**
+     * @return the address the server is listening on
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        render_thread.interrupt();
+        connections.shutdownNow();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Render server failed to accept a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the requests of a connection and write back their frames, until the client closes the connection.
+     */
+    private void serve(SocketChannel channel) {
+        try (channel;
+                DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+                DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            while (running) {
+                String world_id;
+                try {
+                    world_id = input.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                int width = input.readInt();
+                int height = input.readInt();
+                int count = input.readInt();
+                if (width <= 0 || height <= 0 || width > MAX_FRAME_SIZE || height > MAX_FRAME_SIZE || count < 0
+                        || count > MAX_POSES || (long) width * height * count > MAX_REQUEST_PIXELS) {
+                    // The rest of the request cannot be trusted, so the connection is closed
+                    output.writeInt(STATUS_BAD_REQUEST);
+                    output.flush();
+                    return;
+                }
+                double[][] poses = new double[count][9];
+                for (double[] pose : poses) {
+                    for (int i = 0; i < 9; i++) {
+                        pose[i] = input.readDouble();
+                    }
+                }
+
+                if (!worlds.containsKey(world_id)) {
+                    output.writeInt(STATUS_UNKNOWN_WORLD);
+                    output.flush();
+                    continue;
+                }
+                long reserved = count * (long) encodedSize(width, height);
+                if (pending_bytes.addAndGet(reserved) > MAX_PENDING_BYTES) {
+                    pending_bytes.addAndGet(-reserved);
+                    output.writeInt(STATUS_BUSY);
+                    output.flush();
+                    continue;
+                }
+                Request request = new Request(world_id, width, height, poses);
+                boolean failed = false;
+                try {
+                    if (!queue.offer(request)) {
+                        output.writeInt(STATUS_BUSY);
+                        output.flush();
+                        continue;
+                    }
+
+                    // Stream the frames back as they are rendered
+                    output.writeInt(STATUS_OK);
+                    for (int i = 0; i < count; i++) {
+                        byte[] frame = request.frames.poll(FRAME_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        if (frame == null || frame == FAILED) {
+                            failed = true;
+                            break;
+                        }
+                        output.writeInt(frame.length);
+                        output.write(frame);
+                        output.flush();
+                    }
+                } finally {
+                    // Drop the frames that were not sent, and the ones the render thread may still deliver
+                    request.abandoned = true;
+                    request.frames.clear();
+                    pending_bytes.addAndGet(-reserved);
+                }
+                if (failed) {
+                    output.writeInt(FRAME_FAILED);
+                    output.flush();
+                    System.err.println("Render server failed to render a request of " + count + " frames of "
+                            + world_id + " at " + width + "x" + height);
+                    continue;
+                }
+                long latency = System.nanoTime() - request.received;
+                output.writeLong(latency);
+                output.flush();
+                if (LOG_LATENCY) {
+                    System.out.println(String.format(Locale.ROOT, "Rendered %d frames of %s at %dx%d in %.3f ms",
+                            count, world_id, width, height, latency / 1e6));
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Render server connection failed: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Take the waiting requests in batches, and render the requests sharing a world and a frame size together.
+     */
+    private void renderLoop() {
+        ArrayList<Request> batch = new ArrayList<Request>();
+        while (running) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.clear();
+                batch.add(first);
+                queue.drainTo(batch);
+
+                // Group the requests by world and frame size, keeping the order of arrival
+                Map<String, List<Request>> passes = new HashMap<String, List<Request>>();
+                ArrayList<String> order = new ArrayList<String>();
+                for (Request request : batch) {
+                    String key = request.world_id + '\n' + request.width + 'x' + request.height;
+                    if (!passes.containsKey(key)) {
+                        passes.put(key, new ArrayList<Request>());
+                        order.add(key);
+                    }
+                    passes.get(key).add(request);
+                }
+                for (String key : order) {
+                    List<Request> pass = passes.get(key);
+                    try {
+                        renderPass(pass);
+                    } catch (Throwable e) {
+                        // Answer the waiting connections, and keep serving the next passes
+                        System.err.println("Render server failed to render a pass: " + e);
+                        for (Request request : pass) {
+                            if (request.delivered < request.poses.length) {
+                                request.frames.add(FAILED);
+                            }
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Render the requests on the same world and frame size. Identical poses are only rendered once,
+     * and a frame is only kept until the last request of the pass that uses it has received it.
+     */
+    private void renderPass(List<Request> requests) {
+        Request first = requests.get(0);
+        Simulation simulation = worlds.get(first.world_id);
+        simulation.applyEdits();
+
+        if (framebuffer == null || framebuffer.getWidth() != first.width || framebuffer.getHeight() != first.height) {
+            framebuffer = new Framebuffer(first.width, first.height);
+        }
+        Camera camera = new Camera();
+        Map<PoseKey, byte[]> rendered = new HashMap<PoseKey, byte[]>();
+
+        // The number of times each pose is still needed by the pass
+        Map<PoseKey, Integer> uses = new HashMap<PoseKey, Integer>();
+        for (Request request : requests) {
+            for (double[] pose : request.poses) {
+                uses.merge(new PoseKey(pose), 1, Integer::sum);
+            }
+        }
+
+        for (Request request : requests) {
+            for (double[] pose : request.poses) {
+                PoseKey pose_key = new PoseKey(pose);
+                if (request.abandoned) {
+                    // Nobody waits for the frame, only keep the count of uses right for the other requests
+                    if (uses.merge(pose_key, -1, Integer::sum) == 0) {
+                        rendered.remove(pose_key);
+                    }
+                    continue;
+                }
+                byte[] frame = rendered.computeIfAbsent(pose_key, key -> {
+                    camera.setPosition(new double[] { pose[0], pose[1], pose[2] });
+                    camera.setSurface_normal(new double[] { pose[3], pose[4], pose[5] });
+                    camera.setUp_vector(new double[] { pose[6], pose[7], pose[8] });
+                    RayCaster.render(simulation, camera, framebuffer);
+                    rendered_frames.incrementAndGet();
+                    return encodePPM(framebuffer);
+                });
+                if (uses.merge(pose_key, -1, Integer::sum) == 0) {
+                    rendered.remove(pose_key);
+                }
+                request.frames.add(frame);
+                request.delivered++;
+            }
+        }
+    }
+
+    // A pose used as a map key, compared by value
+    private static class PoseKey {
+        final double[] pose;
+
+        PoseKey(double[] pose) {
+            this.pose = pose;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PoseKey && Arrays.equals(pose, ((PoseKey) other).pose);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(pose);
+        }
+    }
+
+    /**
+     * Encode the content of a framebuffer as a binary PPM (P6) image.
+     *
+     * @param framebuffer the framebuffer to encode
+     * @return the bytes of the image
+     */
+    public static byte[] encodePPM(Framebuffer framebuffer) {
+        int width = framebuffer.getWidth();
+        int height = framebuffer.getHeight();
+        byte[] header = ppmHeader(width, height);
+        byte[] image = new byte[encodedSize(width, height)];
+        System.arraycopy(header, 0, image, 0, header.length);
+
+        int offset = header.length;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color = framebuffer.getPixel(x, y);
+                image[offset++] = (byte) (color >> 16);
+                image[offset++] = (byte) (color >> 8);
+                image[offset++] = (byte) color;
+            }
+        }
+        return image;
+    }
+
+    private static byte[] ppmHeader(int width, int height) {
+        return ("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the size in bytes of an encoded frame
+     */
+    private static int encodedSize(int width, int height) {
+        return ppmHeader(width, height).length + width * height * 3;
+    }
+
+    /**
+     * Parse an address: "unix:path" for a Unix domain socket, or a port number for a loopback TCP socket.
+     *
+     * @param address the address to parse
+     * @return the socket address
+     */
+    public static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(Path.of(address.substring(5)));
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+    }
+
+    /**
+     * Start a server with the default world, on the address given as the first argument,
+     * or on the default port if there is none.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SocketAddress address = args.length > 0 ? parseAddress(args[0])
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        try (RenderServer server = new RenderServer(address)) {
+            server.registerWorld("default", new Simulation());
+            System.out.println("Render server listening on " + server.getAddress());
+            Thread.currentThread().join();
+        }
+    }
+
+}
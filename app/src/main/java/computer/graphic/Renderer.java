@@ -158,13 +158,46 @@ public class Renderer {
      */
     public static ArrayList<Line> drawCube(Cube cube) {
         ArrayList<Line> pixels = new ArrayList<Line>();
+        for (double[] segment : projectCube(cube)) {
+            pixels.add(drawLineCentered2(segment[0], segment[1], segment[2], segment[3]));
+        }
+        return pixels;
+    }
 
-        double[][][] edges = cube.getEdges();
+    /**
+     * Project the edges of a cube onto the camera's screen plane without drawing them.
+     * The coordinates are centered on the screen, with the y-axis pointing up, the same
+     * convention as the drawLineCentered methods.
+     * 
+     * The vertices of the cube's template are transformed once, then shared by all the edges that use them.
+     * 
+     * @param cube the cube to project
+     * @return an ArrayList of segments, each represented by [x1, y1, x2, y2]
+     */
+    public static ArrayList<double[]> projectCube(Cube cube) {
+        ArrayList<double[]> segments = new ArrayList<double[]>();
+
+        Template template = cube.getTemplate();
+        double[][] vertices = template.getVertices();
+        int[][] edges = template.getEdges();
+        double[] position = Camera.INSTANCE.getPosition();
+        double[] surface_normal = Camera.INSTANCE.getSurface_normal();
+
+        // Transform stage: place the template at the cube's center and size, relative to the camera's position
+        double[][] relative = new double[vertices.length][];
+        double[] dots = new double[vertices.length];
+        double[][] projected = new double[vertices.length][];
+        for (int i = 0; i < vertices.length; i++) {
+            double[] vertex = vertices[i];
+            relative[i] = new double[] { cube.getX() + cube.getSize() * vertex[0] - position[0],
+                    cube.getY() + cube.getSize() * vertex[1] - position[1],
+                    cube.getZ() + cube.getSize() * vertex[2] - position[2] };
+            dots[i] = util.dotProduct(relative[i], surface_normal);
+        }
 
         for (int i = 0; i < edges.length; i++) {
-            double[][] edge = edges[i];
-            double[] vertex1 = util.vectorSubtraction(edge[0], Camera.INSTANCE.getPosition());
-            double[] vertex2 = util.vectorSubtraction(edge[1], Camera.INSTANCE.getPosition());
+            int index1 = edges[i][0];
+            int index2 = edges[i][1];
 
             double[] starting = null;
             double[] ending = null;
@@ -173,13 +206,13 @@ public class Renderer {
             // 1 - Both vertices are in front of the camera
             // 2 - Both vertices are behind the camera
             // 3 - One vertex is in front of the camera and the other is behind the camera
-            double dot1 = util.dotProduct(vertex1, Camera.INSTANCE.getSurface_normal());
-            double dot2 = util.dotProduct(vertex2, Camera.INSTANCE.getSurface_normal());
+            double dot1 = dots[index1];
+            double dot2 = dots[index2];
 
             // 1 - Both vertices are in front of the camera
             if (dot1 > 0 && dot2 > 0) {
-                starting = project(vertex1, Camera.INSTANCE);
-                ending = project(vertex2, Camera.INSTANCE);
+                starting = projectVertex(relative, projected, index1);
+                ending = projectVertex(relative, projected, index2);
             }
             // 2 - Both vertices are behind the camera
             else if (dot1 < 0 && dot2 < 0) {
@@ -190,35 +223,24 @@ public class Renderer {
             else {
                 // When vertex1 is in front
                 if (dot1 > 0) {
-                    starting = project(vertex1, Camera.INSTANCE);
+                    starting = projectVertex(relative, projected, index1);
                 }
                 // When vertex2 is in front
                 else {
-                    starting = project(vertex2, Camera.INSTANCE);
+                    starting = projectVertex(relative, projected, index2);
                 }
                 // Plane : Ax + By + Cz = D
-                // Given surface_normal = [A, B, C], and position = [x, y, z] we find D
-                double D = Camera.INSTANCE.getSurface_normal()[0] * Camera.INSTANCE.getPosition()[0]
-                        + Camera.INSTANCE.getSurface_normal()[1] * Camera.INSTANCE.getPosition()[1]
-                        + Camera.INSTANCE.getSurface_normal()[2] * Camera.INSTANCE.getPosition()[2];
-                
-                // Construct the plane Ax + By + Cz = D
-                double[] plane = new double[] { Camera.INSTANCE.getSurface_normal()[0],
-                        Camera.INSTANCE.getSurface_normal()[1],
-                        Camera.INSTANCE.getSurface_normal()[2], D };
+                // Relative to the camera's position, the camera plane goes through the origin, so D = 0
+                double[] plane = new double[] { surface_normal[0], surface_normal[1], surface_normal[2], 0 };
 
-                // Find the intersection of the line and the plane
-                double[] intersection = util.linePlaneIntersection(plane, edge[0], edge[1]);
+                // Find the intersection of the line and the plane, relative to the camera's position
+                double[] intersection = util.linePlaneIntersection(plane, relative[index1], relative[index2]);
                 if (intersection == null) {
                     continue;
                 }
 
-                // Translate the intersection to the camera's position
-                intersection = util.vectorSubtraction(intersection, Camera.INSTANCE.getPosition());
-
                 // Find the x and y components of the intersection in the camera's frame of reference
-                double[] right_vector = util.crossProduct(Camera.INSTANCE.getSurface_normal(),
-                        Camera.INSTANCE.getUp_vector());
+                double[] right_vector = util.crossProduct(surface_normal, Camera.INSTANCE.getUp_vector());
                 double x_component = util.dotProduct(intersection, right_vector) * 10000;
                 double y_component = util.dotProduct(intersection, Camera.INSTANCE.getUp_vector()) * 10000;
 
@@ -226,9 +248,19 @@ public class Renderer {
                 
 
             }
-            pixels.add(drawLineCentered2(starting[0], starting[1], ending[0], ending[1]));
+            segments.add(new double[] { starting[0], starting[1], ending[0], ending[1] });
         }
-        return pixels;
+        return segments;
+    }
+
+    /**
+     * Project a transformed vertex, reusing the projection if another edge already projected it.
+     */
+    private static double[] projectVertex(double[][] relative, double[][] projected, int index) {
+        if (projected[index] == null) {
+            projected[index] = project(relative[index], Camera.INSTANCE);
+        }
+        return projected[index];
     }
 
     
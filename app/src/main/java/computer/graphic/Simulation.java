@@ -1,8 +1,11 @@
 package computer.graphic;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 /**
  * The Simulation class represents the world in which the cubes are placed.
- * The world is a 3D grid of cubes.
+ * The world is a 3D grid of cubes, where an empty cell is null.
+ * Cubes can be placed and removed at runtime by submitting batches of edits (see WorldEdit).
  */
 public class Simulation {
 
@@ -10,9 +13,28 @@ public class Simulation {
     public static int CUBE_SIZE = 50;
     public static int WORLD_SIZE =  1;
 
+    /**
+     * The number of cells along each axis of a chunk.
+     * Chunks are used to quickly skip the empty regions of the world.
+     */
+    public static int CHUNK_SIZE = 8;
+
     // The world
     public Cube[][][] world;
 
+    // The grid layout of the world, fixed when the simulation is created
+    private final double cube_size;
+    private final double[] origin;
+
+    // The number of cubes in each chunk, indexed by chunkIndex
+    private final int chunk_size;
+    private final int chunks_per_axis;
+    private final int[] chunk_counts;
+
+    // The batches of edits waiting for the next frame, and the number of times the world changed
+    private final ConcurrentLinkedQueue<WorldEdit> pending_edits = new ConcurrentLinkedQueue<WorldEdit>();
+    private volatile long version = 0;
+
     /**
      * Create a new simulation.
      */
@@ -32,11 +54,161 @@ public class Simulation {
 
         this.world = world;
 
+        // The cell (x, y, z) is the cube centered on (start_x + x * CUBE_SIZE, start_y + y * CUBE_SIZE, z * CUBE_SIZE),
+        // so the grid starts half a cube before the center of the first cube
+        this.cube_size = CUBE_SIZE;
+        this.origin = new double[] { start_x - CUBE_SIZE / 2.0, start_y - CUBE_SIZE / 2.0, -CUBE_SIZE / 2.0 };
+
+        this.chunk_size = CHUNK_SIZE;
+        this.chunks_per_axis = (WORLD_SIZE + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunk_counts = new int[chunks_per_axis * chunks_per_axis * chunks_per_axis];
+        for (int x = 0; x < WORLD_SIZE; x++) {
+            for (int y = 0; y < WORLD_SIZE; y++) {
+                for (int z = 0; z < WORLD_SIZE; z++) {
+                    if (world[x][y][z] != null) {
+                        chunk_counts[chunkIndex(x / chunk_size, y / chunk_size, z / chunk_size)]++;
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Submit a batch of edits. The batch is applied at the start of the next frame, by applyEdits.
+     * This can be called from any thread, but the batch must not be modified after it is submitted.
+     * 
+     * @param edit the batch of edits
+     * @throws IllegalArgumentException if an edit is outside of the world
+     */
+    public void submit(WorldEdit edit) {
+        edit.checkBounds(world.length);
+        pending_edits.add(edit);
+    }
+
+    /**
+     * Apply all the submitted batches of edits, in the order they were submitted.
+     * This must be called on the thread that renders the world, before rendering,
+     * so that the renderer sees either none or all of a batch.
+     * 
+     * @return the number of cells that changed
+     */
+    public int applyEdits() {
+        int changed = 0;
+        WorldEdit edit;
+        while ((edit = pending_edits.poll()) != null) {
+            changed += edit.applyTo(this);
+        }
+        if (changed > 0) {
+            version++;
+        }
+        return changed;
+    }
+
+    /**
+     * Place a cube in a cell, and update the cube count of its chunk.
+     * 
+     * @return true if the cell was empty, false otherwise
+     */
+    boolean placeCube(int x, int y, int z) {
+        if (world[x][y][z] != null) {
+            return false;
+        }
+        double[] center = new double[] { origin[0] + (x + 0.5) * cube_size, origin[1] + (y + 0.5) * cube_size,
+                origin[2] + (z + 0.5) * cube_size };
+        world[x][y][z] = new Cube(center, cube_size);
+        chunk_counts[chunkIndex(x / chunk_size, y / chunk_size, z / chunk_size)]++;
+        return true;
+    }
+
+    /**
+     * Remove the cube of a cell, and update the cube count of its chunk.
+     * 
+     * @return true if the cell contained a cube, false otherwise
+     */
+    boolean removeCube(int x, int y, int z) {
+        if (world[x][y][z] == null) {
+            return false;
+        }
+        world[x][y][z] = null;
+        chunk_counts[chunkIndex(x / chunk_size, y / chunk_size, z / chunk_size)]--;
+        return true;
+    }
+
+    /**
+     * Check if a cell of the grid contains a cube.
+     * 
+     * @param x the x index of the cell
+     * @param y the y index of the cell
+     * @param z the z index of the cell
+     * @return true if the cell is inside the world and contains a cube, false otherwise
+     */
+    public boolean isOccupied(int x, int y, int z) {
+        int size = world.length;
+        if (x < 0 || y < 0 || z < 0 || x >= size || y >= size || z >= size) {
+            return false;
+        }
+        return world[x][y][z] != null;
+    }
+
+    /**
+     * Check if a chunk of the grid contains no cube at all.
+     * The chunk (cx, cy, cz) covers the cells from (cx, cy, cz) * CHUNK_SIZE to (cx + 1, cy + 1, cz + 1) * CHUNK_SIZE - 1.
+     * 
+     * @param cx the x index of the chunk
+     * @param cy the y index of the chunk
+     * @param cz the z index of the chunk
+     * @return true if the chunk is empty or outside of the world, false otherwise
+     */
+    public boolean isChunkEmpty(int cx, int cy, int cz) {
+        if (cx < 0 || cy < 0 || cz < 0 || cx >= chunks_per_axis || cy >= chunks_per_axis || cz >= chunks_per_axis) {
+            return true;
+        }
+        return chunk_counts[chunkIndex(cx, cy, cz)] == 0;
+    }
+
+    private int chunkIndex(int cx, int cy, int cz) {
+        return (cx * chunks_per_axis + cy) * chunks_per_axis + cz;
     }
 
 
     public Cube[][][] getWorld() {
         return world;
     }
+
+    /**
+     * @return the number of times edits changed the world, to detect changes between frames
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of cells along each axis of the world
+     */
+    public int getSize() {
+        return world.length;
+    }
+
+    /**
+     * @return the size of a cell of the grid
+     */
+    public double getCubeSize() {
+        return cube_size;
+    }
+
+    /**
+     * @return the corner of the grid with the smallest coordinates
+     */
+    public double[] getOrigin() {
+        return origin;
+    }
+
+    /**
+     * @return the number of cells along each axis of a chunk
+     */
+    public int getChunkSize() {
+        return chunk_size;
+    }
     
 }
@@ -0,0 +1,99 @@
+package computer.graphic;
+
+/**
+ * The Template class is a shape shared by many instances, such as all the cubes of a simulation.
+ *
+ * A template is made of vertices, in a unit space centered on the origin, and of edges between these vertices.
+ * An instance only stores its center and its scale, and the renderer places the template vertices at
+ * center + scale * vertex when it transforms the instance.
+ */
+public class Template {
+
+    /**
+     * The cube of size 1 centered on the origin.
+     * Vertex i is on the positive side of the x, y, and z axes when bit 0, 1, and 2 of i are set.
+     */
+    public static final Template UNIT_CUBE = new Template(
+            new double[][] {
+                    { -0.5, -0.5, -0.5 }, { 0.5, -0.5, -0.5 }, { -0.5, 0.5, -0.5 }, { 0.5, 0.5, -0.5 },
+                    { -0.5, -0.5, 0.5 }, { 0.5, -0.5, 0.5 }, { -0.5, 0.5, 0.5 }, { 0.5, 0.5, 0.5 }
+            },
+            new int[][] {
+                    // front face
+                    { 0, 1 }, { 1, 3 }, { 3, 2 }, { 2, 0 },
+                    // back face
+                    { 4, 5 }, { 5, 7 }, { 7, 6 }, { 6, 4 },
+                    // from the front face to the back face
+                    { 0, 4 }, { 1, 5 }, { 3, 7 }, { 2, 6 }
+            });
+
+    private final double[][] vertices;
+    private final int[][] edges;
+
+    // The bounding box of the vertices
+    private final double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+    private final double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    /**
+     * Create a new template.
+     *
+     * @param vertices the vertices of the shape, in unit space
+     * @param edges the edges of the shape, each represented by the indices of its two vertices
+     */
+    public Template(double[][] vertices, int[][] edges) {
+        for (int[] edge : edges) {
+            if (edge.length != 2 || edge[0] < 0 || edge[1] < 0 || edge[0] >= vertices.length
+                    || edge[1] >= vertices.length) {
+                throw new IllegalArgumentException("An edge must join two vertices of the template");
+            }
+        }
+        this.vertices = vertices;
+        this.edges = edges;
+        for (double[] vertex : vertices) {
+            for (int i = 0; i < 3; i++) {
+                min[i] = Math.min(min[i], vertex[i]);
+                max[i] = Math.max(max[i], vertex[i]);
+            }
+        }
+    }
+
+    /**
+     * Create a template from edges in absolute coordinates, such that placing it at the given center and scale
+     * gives back the same edges.
+     *
+     * @param edges the edges, each represented by two points in 3D space
+     * @param center the center of the instance
+     * @param scale the scale of the instance
+     * @return the template
+     */
+    public static Template fromEdges(double[][][] edges, double[] center, double scale) {
+        double[][] vertices = new double[edges.length * 2][];
+        int[][] indices = new int[edges.length][];
+        for (int i = 0; i < edges.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                vertices[i * 2 + j] = new double[] { (edges[i][j][0] - center[0]) / scale,
+                        (edges[i][j][1] - center[1]) / scale, (edges[i][j][2] - center[2]) / scale };
+            }
+            indices[i] = new int[] { i * 2, i * 2 + 1 };
+        }
+        return new Template(vertices, indices);
+    }
+
+    // Getters
+    public double[][] getVertices() {
+        return vertices;
+    }
+
+    public int[][] getEdges() {
+        return edges;
+    }
+
+    public double[] getMin() {
+        return min;
+    }
+
+    public double[] getMax() {
+        return max;
+    }
+
+}
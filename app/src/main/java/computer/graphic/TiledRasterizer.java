@@ -0,0 +1,277 @@
+package computer.graphic;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The TiledRasterizer class draws projected lines into a framebuffer using every available core.
+ *
+ * The screen is divided into square tiles. Every line is first clipped to the screen and binned
+ * into the tiles its bounding box overlaps, then each tile is rasterized by its own worker.
+ * A worker only ever writes the pixels of its own tile, so no synchronization is needed between
+ * the workers.
+ *
+ * To make sure that a line crossing several tiles has no seams, each tile evaluates the line
+ * equation of the whole screen-clipped line, and only restricts the range of pixels it iterates over.
+ *
+ * Each worker draws its tiles into a scratch buffer that it keeps between frames, and copies them to the
+ * framebuffer row by row, so that a frame does not allocate per tile or per pixel.
+ */
+public class TiledRasterizer {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static int TILE_SIZE = 64;
+
+    /**
+     * The stroke width of the lines in pixels.
+     */
+    public static int STROKE_WIDTH = 2;
+
+    /**
+     * The ARGB color of the lines.
+     */
+    public static int STROKE_COLOR = 0xFFFF0000;
+
+    /**
+     * The ARGB color that the framebuffer is cleared with before drawing.
+     */
+    public static int BACKGROUND_COLOR = 0xFFFFFFFF;
+
+    // The scratch tile of each worker
+    private static final ThreadLocal<int[]> TILES = new ThreadLocal<int[]>();
+
+    /**
+     * Rasterize a list of projected segments into a framebuffer. The framebuffer is cleared first.
+     *
+     * @param segments the segments to draw, each represented by [x1, y1, x2, y2] in centered
+     *                 coordinates, as returned by Renderer.projectCube
+     * @param framebuffer the framebuffer to draw into
+     */
+    public static void rasterize(List<double[]> segments, Framebuffer framebuffer) {
+        int width = framebuffer.getWidth();
+        int height = framebuffer.getHeight();
+        int tile_size = TILE_SIZE;
+        int tiles_x = (width + tile_size - 1) / tile_size;
+        int tiles_y = (height + tile_size - 1) / tile_size;
+        double radius = STROKE_WIDTH / 2.0;
+
+        // Convert the segments to screen coordinates and clip them to the screen,
+        // so that the lines that are projected far outside of the screen stay cheap to bin
+        double[] lines = new double[segments.size() * 4];
+        int line_count = 0;
+        for (double[] segment : segments) {
+            int offset = line_count * 4;
+            lines[offset] = segment[0] + width / 2.0;
+            lines[offset + 1] = -segment[1] + height / 2.0;
+            lines[offset + 2] = segment[2] + width / 2.0;
+            lines[offset + 3] = -segment[3] + height / 2.0;
+            if (clip(lines, offset, -radius, -radius, width + radius, height + radius)) {
+                line_count++;
+            }
+        }
+
+        // Bin the lines into the tiles. The first pass counts the lines of each tile,
+        // the second pass fills the bins.
+        int[] bin_sizes = new int[tiles_x * tiles_y];
+        int[] bounds = new int[line_count * 4];
+        for (int i = 0; i < line_count; i++) {
+            tileBounds(lines, i * 4, radius, tile_size, tiles_x, tiles_y, bounds, i * 4);
+            for (int ty = bounds[i * 4 + 1]; ty <= bounds[i * 4 + 3]; ty++) {
+                for (int tx = bounds[i * 4]; tx <= bounds[i * 4 + 2]; tx++) {
+                    bin_sizes[ty * tiles_x + tx]++;
+                }
+            }
+        }
+        int[][] bins = new int[tiles_x * tiles_y][];
+        for (int i = 0; i < bins.length; i++) {
+            bins[i] = new int[bin_sizes[i]];
+            bin_sizes[i] = 0;
+        }
+        for (int i = 0; i < line_count; i++) {
+            for (int ty = bounds[i * 4 + 1]; ty <= bounds[i * 4 + 3]; ty++) {
+                for (int tx = bounds[i * 4]; tx <= bounds[i * 4 + 2]; tx++) {
+                    int tile = ty * tiles_x + tx;
+                    bins[tile][bin_sizes[tile]++] = i;
+                }
+            }
+        }
+
+        // Rasterize every tile on its own worker
+        final int columns = tiles_x;
+        IntStream.range(0, bins.length).parallel().forEach(tile -> {
+            int x0 = (tile % columns) * tile_size;
+            int y0 = (tile / columns) * tile_size;
+            int x1 = Math.min(x0 + tile_size, width);
+            int y1 = Math.min(y0 + tile_size, height);
+            rasterizeTile(framebuffer, lines, bins[tile], x0, y0, x1, y1);
+        });
+    }
+
+    /**
+     * Draw the lines of a bin into a tile.
+     * The tile is drawn into the scratch buffer of the worker first, then copied to the pixels in
+     * [x0, x1) x [y0, y1) of the framebuffer, so that the framebuffer only sees the pixels that really changed
+     * since the last frame.
+     */
+    private static void rasterizeTile(Framebuffer framebuffer, double[] lines, int[] bin, int x0, int y0, int x1,
+            int y1) {
+        int size = (x1 - x0) * (y1 - y0);
+        int[] tile = TILES.get();
+        if (tile == null || tile.length < size) {
+            tile = new int[size];
+            TILES.set(tile);
+        }
+        Arrays.fill(tile, 0, size, BACKGROUND_COLOR);
+
+        double radius = STROKE_WIDTH / 2.0;
+        double[] clipped = new double[4];
+
+        for (int index : bin) {
+            int offset = index * 4;
+            double lx1 = lines[offset];
+            double ly1 = lines[offset + 1];
+            double lx2 = lines[offset + 2];
+            double ly2 = lines[offset + 3];
+
+            // Only iterate over the part of the line that can touch this tile
+            System.arraycopy(lines, offset, clipped, 0, 4);
+            if (!clip(clipped, 0, x0 - radius, y0 - radius, x1 + radius, y1 + radius)) {
+                continue;
+            }
+
+            double dx = lx2 - lx1;
+            double dy = ly2 - ly1;
+
+            // If the slope is shallow, we iterate over the x-axis
+            if (Math.abs(dx) >= Math.abs(dy)) {
+                if (dx == 0) {
+                    plot(tile, lx1, ly1, x0, y0, x1, y1);
+                    continue;
+                }
+                double slope = dy / dx;
+                int start = (int) Math.ceil(Math.min(clipped[0], clipped[2]));
+                int end = (int) Math.floor(Math.max(clipped[0], clipped[2]));
+                for (int x = start; x <= end; x++) {
+                    plot(tile, x, ly1 + (x - lx1) * slope, x0, y0, x1, y1);
+                }
+            }
+            // If the slope is steep, we iterate over the y-axis
+            else {
+                double slope = dx / dy;
+                int start = (int) Math.ceil(Math.min(clipped[1], clipped[3]));
+                int end = (int) Math.floor(Math.max(clipped[1], clipped[3]));
+                for (int y = start; y <= end; y++) {
+                    plot(tile, lx1 + (y - ly1) * slope, y, x0, y0, x1, y1);
+                }
+            }
+        }
+
+        int tile_width = x1 - x0;
+        for (int y = y0; y < y1; y++) {
+            framebuffer.setPixels(x0, y, tile, (y - y0) * tile_width, tile_width);
+        }
+    }
+
+    /**
+     * Draw a square of STROKE_WIDTH pixels centered on a point, restricted to the pixels of a tile.
+     * The tile buffer covers [x0, x1) x [y0, y1) of the screen.
+     */
+    private static void plot(int[] tile, double x, double y, int x0, int y0, int x1, int y1) {
+        int left = (int) Math.round(x - STROKE_WIDTH / 2.0);
+        int top = (int) Math.round(y - STROKE_WIDTH / 2.0);
+        int right = Math.min(left + STROKE_WIDTH, x1);
+        int bottom = Math.min(top + STROKE_WIDTH, y1);
+        for (int py = Math.max(top, y0); py < bottom; py++) {
+            for (int px = Math.max(left, x0); px < right; px++) {
+                tile[(py - y0) * (x1 - x0) + (px - x0)] = STROKE_COLOR;
+            }
+        }
+    }
+
+    /**
+     * Find the range of tiles overlapped by the bounding box of a line, including its stroke.
+     * The result is written as [first tile x, first tile y, last tile x, last tile y].
+     */
+    private static void tileBounds(double[] lines, int offset, double radius, int tile_size, int tiles_x,
+            int tiles_y, int[] bounds, int bounds_offset) {
+        double min_x = Math.min(lines[offset], lines[offset + 2]) - radius;
+        double min_y = Math.min(lines[offset + 1], lines[offset + 3]) - radius;
+        double max_x = Math.max(lines[offset], lines[offset + 2]) + radius;
+        double max_y = Math.max(lines[offset + 1], lines[offset + 3]) + radius;
+
+        bounds[bounds_offset] = clamp((int) Math.floor(min_x / tile_size), tiles_x);
+        bounds[bounds_offset + 1] = clamp((int) Math.floor(min_y / tile_size), tiles_y);
+        bounds[bounds_offset + 2] = clamp((int) Math.floor(max_x / tile_size), tiles_x);
+        bounds[bounds_offset + 3] = clamp((int) Math.floor(max_y / tile_size), tiles_y);
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(value, count - 1));
+    }
+
+    /**
+     * Clip a line to a rectangle using the Liang-Barsky algorithm.
+     * The line is stored as [x1, y1, x2, y2] starting at the offset, and is clipped in place.
+     *
+     * @return true if a part of the line is inside the rectangle, false otherwise
+     */
+    static boolean clip(double[] line, int offset, double min_x, double min_y, double max_x, double max_y) {
+        double x1 = line[offset];
+        double y1 = line[offset + 1];
+        double dx = line[offset + 2] - x1;
+        double dy = line[offset + 3] - y1;
+
+        double t0 = 0;
+        double t1 = 1;
+
+        // Each side of the rectangle is written as p * t <= q
+        for (int i = 0; i < 4; i++) {
+            double p;
+            double q;
+            switch (i) {
+                case 0:
+                    p = -dx;
+                    q = x1 - min_x;
+                    break;
+                case 1:
+                    p = dx;
+                    q = max_x - x1;
+                    break;
+                case 2:
+                    p = -dy;
+                    q = y1 - min_y;
+                    break;
+                default:
+                    p = dy;
+                    q = max_y - y1;
+                    break;
+            }
+            if (p == 0) {
+                // The line is parallel to this side of the rectangle
+                if (q < 0) {
+                    return false;
+                }
+                continue;
+            }
+            double t = q / p;
+            if (p < 0) {
+                t0 = Math.max(t0, t);
+            } else {
+                t1 = Math.min(t1, t);
+            }
+            if (t0 > t1) {
+                return false;
+            }
+        }
+
+        line[offset] = x1 + t0 * dx;
+        line[offset + 1] = y1 + t0 * dy;
+        line[offset + 2] = x1 + t1 * dx;
+        line[offset + 3] = y1 + t1 * dy;
+        return true;
+    }
+
+}
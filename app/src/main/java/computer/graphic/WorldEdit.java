@@ -0,0 +1,105 @@
+package computer.graphic;
+
+import java.util.Arrays;
+
+/**
+ * The WorldEdit class is a batch of cubes to place in or remove from the world of a simulation.
+ *
+ * A batch is built by a single thread, then submitted with Simulation.submit. The submitted batches are
+ * applied together by Simulation.applyEdits at the start of the next frame, so the renderer never sees
+ * half of a batch. The edits of a batch are applied in the order they were added.
+ *
+ * Each edit only changes its own cell and the cube count of its chunk, so applying a batch costs
+ * O(number of edits), whatever the size of the world.
+ */
+public class WorldEdit {
+
+    private static final int REMOVE = 0;
+    private static final int PLACE = 1;
+
+    // Each edit is stored as 4 ints: x, y, z, and the operation
+    private int[] edits = new int[64];
+    private int count = 0;
+
+    /**
+     * Place a cube in a cell. Placing a cube in an occupied cell does nothing.
+     *
+     * @param x the x index of the cell
+     * @param y the y index of the cell
+     * @param z the z index of the cell
+     * @return this batch
+     */
+    public WorldEdit place(int x, int y, int z) {
+        return add(x, y, z, PLACE);
+    }
+
+    /**
+     * Remove the cube of a cell. Removing the cube of an empty cell does nothing.
+     *
+     * @param x the x index of the cell
+     * @param y the y index of the cell
+     * @param z the z index of the cell
+     * @return this batch
+     */
+    public WorldEdit remove(int x, int y, int z) {
+        return add(x, y, z, REMOVE);
+    }
+
+    private WorldEdit add(int x, int y, int z, int operation) {
+        if (x < 0 || y < 0 || z < 0) {
+            throw new IllegalArgumentException("Cell indices must not be negative");
+        }
+        if ((count + 1) * 4 > edits.length) {
+            edits = Arrays.copyOf(edits, edits.length * 2);
+        }
+        int offset = count * 4;
+        edits[offset] = x;
+        edits[offset + 1] = y;
+        edits[offset + 2] = z;
+        edits[offset + 3] = operation;
+        count++;
+        return this;
+    }
+
+    /**
+     * @return the number of edits in this batch
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Check that every edit of this batch is inside a world of the given size.
+     *
+     * @throws IllegalArgumentException if an edit is outside of the world
+     */
+    void checkBounds(int size) {
+        for (int i = 0; i < count * 4; i++) {
+            if (i % 4 != 3 && edits[i] >= size) {
+                throw new IllegalArgumentException("Edit " + (i / 4) + " is outside of the world: (" + edits[i - i % 4]
+                        + ", " + edits[i - i % 4 + 1] + ", " + edits[i - i % 4 + 2] + ")");
+            }
+        }
+    }
+
+    /**
+     * Apply the edits of this batch to a simulation.
+     * This is called by Simulation.applyEdits, on the thread that renders the simulation.
+     *
+     * @return the number of cells that changed
+     */
+    int applyTo(Simulation simulation) {
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            int offset = i * 4;
+            boolean cell_changed = edits[offset + 3] == PLACE
+                    ? simulation.placeCube(edits[offset], edits[offset + 1], edits[offset + 2])
+                    : simulation.removeCube(edits[offset], edits[offset + 1], edits[offset + 2]);
+            if (cell_changed) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+}
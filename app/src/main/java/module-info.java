@@ -2,6 +2,7 @@ module computer.graphic {
     requires transitive javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires java.management;
     
     
     opens computer.graphic to javafx.fxml;
@@ -0,0 +1,150 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the camera collides with the cubes of its collision world as a sphere.
+ */
+class CameraTest {
+
+    private static final double RADIUS = 5;
+
+    private double camera_speed;
+    private boolean collision_enabled;
+    private double collision_radius;
+
+    @BeforeEach
+    void saveSettings() {
+        camera_speed = Camera.CAMERA_SPEED;
+        collision_enabled = Camera.COLLISION_ENABLED;
+        collision_radius = Camera.COLLISION_RADIUS;
+        Camera.COLLISION_ENABLED = true;
+        Camera.COLLISION_RADIUS = RADIUS;
+    }
+
+    @AfterEach
+    void restoreSettings() {
+        Camera.CAMERA_SPEED = camera_speed;
+        Camera.COLLISION_ENABLED = collision_enabled;
+        Camera.COLLISION_RADIUS = collision_radius;
+    }
+
+    @Test
+    void stopsAtAFace() {
+        // A single cube, approached head-on along z
+        Simulation simulation = TestWorlds.create(1);
+        double face = simulation.getOrigin()[2];
+        Camera camera = facingCube(simulation, 25, -20, new double[] { 0, 0, 1 });
+
+        Camera.CAMERA_SPEED = 1;
+        for (int i = 0; i < 100; i++) {
+            camera.moveForward();
+        }
+        double z = camera.getPosition()[2];
+        assertTrue(z <= face - RADIUS && z > face - RADIUS - Camera.CAMERA_SPEED, "z = " + z);
+    }
+
+    @Test
+    void slidesAlongAWall() {
+        // Moving diagonally into the face, the camera keeps moving along x
+        Simulation simulation = TestWorlds.create(1);
+        double face = simulation.getOrigin()[2];
+        double diagonal = Math.sqrt(0.5);
+        Camera camera = facingCube(simulation, 5, -10, new double[] { diagonal, 0, diagonal });
+        double x = camera.getPosition()[0];
+
+        Camera.CAMERA_SPEED = 1;
+        for (int i = 0; i < 30; i++) {
+            camera.moveForward();
+        }
+        assertEquals(x + 30 * diagonal, camera.getPosition()[0], 1e-9);
+        assertTrue(camera.getPosition()[2] <= face - RADIUS);
+    }
+
+    @Test
+    void doesNotTunnelAtHighSpeed() {
+        // One step of four cubes would jump over the cube without the substeps
+        Simulation simulation = TestWorlds.create(1);
+        double face = simulation.getOrigin()[2];
+        Camera camera = facingCube(simulation, 25, -20, new double[] { 0, 0, 1 });
+
+        Camera.CAMERA_SPEED = 4 * simulation.getCubeSize();
+        camera.moveForward();
+        assertTrue(camera.getPosition()[2] <= face - RADIUS, "z = " + camera.getPosition()[2]);
+    }
+
+    @Test
+    void escapesFromInsideACube() {
+        // Starting at the center of the cube, the camera moves freely until it is out
+        Simulation simulation = TestWorlds.create(1);
+        double back_face = simulation.getOrigin()[2] + simulation.getCubeSize();
+        Camera camera = facingCube(simulation, 25, 25, new double[] { 0, 0, 1 });
+
+        Camera.CAMERA_SPEED = 10;
+        for (int i = 0; i < 4; i++) {
+            camera.moveForward();
+        }
+        assertEquals(back_face + 15, camera.getPosition()[2], 1e-9);
+
+        // Once out, the cube blocks the way back
+        camera.moveBackward();
+        camera.moveBackward();
+        assertEquals(back_face + RADIUS, camera.getPosition()[2], 1e-9);
+    }
+
+    @Test
+    void examinedCellsDoNotDependOnTheWorldSize() {
+        CountingSimulation small = CountingSimulation.create(4);
+        CountingSimulation large = CountingSimulation.create(32);
+        for (CountingSimulation simulation : new CountingSimulation[] { small, large }) {
+            Camera camera = facingCube(simulation, 25, -20, new double[] { 0, 0, 1 });
+            Camera.CAMERA_SPEED = 1;
+            for (int i = 0; i < 30; i++) {
+                camera.moveForward();
+            }
+        }
+        assertTrue(small.occupied_checks > 0);
+        assertEquals(small.occupied_checks, large.occupied_checks);
+    }
+
+    /**
+     * Create a camera colliding with a world, at an offset from the origin of the grid on z,
+     * and at the center of the first cell on y.
+     */
+    private static Camera facingCube(Simulation simulation, double x, double z, double[] surface_normal) {
+        double[] origin = simulation.getOrigin();
+        Camera camera = new Camera();
+        camera.setPosition(new double[] { origin[0] + x, origin[1] + 25, origin[2] + z });
+        camera.setSurface_normal(surface_normal);
+        camera.setUp_vector(new double[] { 0, 1, 0 });
+        camera.setCollisionWorld(simulation);
+        return camera;
+    }
+
+    // A world counting the cells the camera examines
+    private static class CountingSimulation extends Simulation {
+        int occupied_checks = 0;
+
+        static CountingSimulation create(int size) {
+            int world_size = Simulation.WORLD_SIZE;
+            try {
+                Simulation.WORLD_SIZE = size;
+                return new CountingSimulation();
+            } finally {
+                Simulation.WORLD_SIZE = world_size;
+            }
+        }
+
+        @Override
+        public boolean isOccupied(int x, int y, int z) {
+            occupied_checks++;
+            return super.isOccupied(x, y, z);
+        }
+    }
+
+}
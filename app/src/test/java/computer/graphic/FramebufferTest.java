@@ -0,0 +1,78 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that the framebuffer only reports the tiles whose pixels changed, for heap and direct framebuffers.
+ */
+class FramebufferTest {
+
+    private static final int TILE = Framebuffer.DIRTY_TILE_SIZE;
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void newFramebuffersAreDirty(boolean direct) {
+        Framebuffer framebuffer = new Framebuffer(200, 100, direct);
+        assertEquals(direct, framebuffer.getBuffer().isDirect());
+        assertArrayEquals(new int[] { 0, 0, 200, 100 }, framebuffer.takeDirtyRegion());
+        assertNull(framebuffer.takeDirtyRegion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void writingTheSameColorsChangesNothing(boolean direct) {
+        Framebuffer framebuffer = new Framebuffer(200, 100, direct);
+        framebuffer.clear(0xFF123456);
+        framebuffer.takeDirtyRegion();
+
+        int[] row = new int[200];
+        Arrays.fill(row, 0xFF123456);
+        framebuffer.setPixels(0, 50, row, 0, 200);
+        framebuffer.setPixel(10, 10, 0xFF123456);
+        assertNull(framebuffer.takeDirtyRegion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void onlyTheChangedTilesAreDirty(boolean direct) {
+        Framebuffer framebuffer = new Framebuffer(300, 200, direct);
+        framebuffer.clear(0xFF000000);
+        framebuffer.takeDirtyRegion();
+
+        // A run across three tiles, where only a pixel of the middle tile changes
+        int[] row = new int[TILE * 3];
+        Arrays.fill(row, 0xFF000000);
+        row[TILE + 5] = 0xFFFFFFFF;
+        framebuffer.setPixels(10, TILE + 3, row, 0, TILE * 2 + 20);
+
+        assertEquals(0xFFFFFFFF, framebuffer.getPixel(10 + TILE + 5, TILE + 3));
+        assertArrayEquals(new int[] { TILE, TILE, TILE, TILE }, framebuffer.takeDirtyRegion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    void runsAreCopiedFromTheOffset(boolean direct) {
+        Framebuffer framebuffer = new Framebuffer(150, 10, direct);
+        int[] source = new int[200];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = 0xFF000000 | i;
+        }
+        framebuffer.setPixels(20, 7, source, 30, 130);
+
+        for (int x = 0; x < 150; x++) {
+            int expected = x >= 20 ? 0xFF000000 | (x + 10) : 0;
+            assertEquals(expected, framebuffer.getPixel(x, 7), "pixel " + x);
+        }
+        int[] region = framebuffer.takeDirtyRegion();
+        assertTrue(region[2] > 0 && region[3] > 0);
+    }
+
+}
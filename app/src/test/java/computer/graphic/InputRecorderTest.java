@@ -0,0 +1,128 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that recordings load back exactly as they were recorded, and that malformed recordings are rejected.
+ */
+class InputRecorderTest {
+
+    private static final String HEADER = "# cuberender input recording";
+    private static final String POSE = "pose 475.0 475.0 -400.0 0.0 0.0 1.0 0.0 1.0 0.0";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordingLoadsBackExactly() throws IOException {
+        Camera camera = new Camera();
+        camera.setPosition(new double[] { 12.5, -3.25, 400.125 });
+        camera.setSurface_normal(new double[] { 0.6, 0, 0.8 });
+        camera.setUp_vector(new double[] { 0, 1, 0 });
+
+        Random random = new Random(1);
+        List<boolean[]> frames = new ArrayList<boolean[]>();
+        List<Boolean> collision = new ArrayList<Boolean>();
+        boolean colliding = false;
+        for (int i = 0; i < 200; i++) {
+            boolean[] states = new boolean[App.INPUT_STATES.length];
+            for (int j = 0; j < states.length; j++) {
+                states[j] = random.nextInt(4) == 0;
+            }
+            if (random.nextInt(20) == 0) {
+                colliding = !colliding;
+            }
+            frames.add(states);
+            collision.add(colliding);
+        }
+
+        Path path = directory.resolve("session.rec");
+        int world_size = Simulation.WORLD_SIZE;
+        try {
+            Simulation.WORLD_SIZE = 7;
+            try (InputRecorder recorder = new InputRecorder(path, camera)) {
+                for (int i = 0; i < frames.size(); i++) {
+                    recorder.record(frames.get(i), collision.get(i));
+                }
+                assertEquals(frames.size(), recorder.getFrames());
+            }
+        } finally {
+            Simulation.WORLD_SIZE = world_size;
+        }
+
+        InputRecorder.Recording recording = InputRecorder.load(path);
+        assertEquals(7, recording.world_size);
+        assertArrayEquals(camera.getPosition(), recording.position);
+        assertArrayEquals(camera.getSurface_normal(), recording.surface_normal);
+        assertArrayEquals(camera.getUp_vector(), recording.up_vector);
+        assertEquals(frames.size(), recording.frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals(frames.get(i), recording.frames.get(i), "frame " + i);
+        }
+        assertEquals(collision, recording.collision);
+    }
+
+    @Test
+    void recordingsWithoutCollisionLinesDoNotCollide() throws IOException {
+        InputRecorder.Recording recording = InputRecorder.load(write(HEADER, POSE, frame('1'), frame('0')));
+        assertEquals(List.of(false, false), recording.collision);
+    }
+
+    @ParameterizedTest
+    @MethodSource("malformedRecordings")
+    void malformedRecordingsAreRejected(String content) throws IOException {
+        Path path = write(content);
+        assertThrows(IOException.class, () -> InputRecorder.load(path));
+    }
+
+    static Stream<String> malformedRecordings() {
+        return Stream.of(
+                // No header
+                String.join("\n", "world 4", POSE, frame('0')),
+                // The header is not the first line
+                String.join("\n", "world 4", HEADER, POSE, frame('0')),
+                // No starting pose
+                String.join("\n", HEADER, "world 4", frame('0')),
+                // A pose of 8 values
+                String.join("\n", HEADER, "pose 1 2 3 4 5 6 7 8", frame('0')),
+                // A pose value that is not a number
+                String.join("\n", HEADER, "pose 1 2 3 4 5 6 7 8 up", frame('0')),
+                // A world size that is not a number
+                String.join("\n", HEADER, "world four", POSE, frame('0')),
+                // A collision state that is not 0 or 1
+                String.join("\n", HEADER, POSE, "collision 2", frame('0')),
+                // A frame with one movement state too many, or too few
+                String.join("\n", HEADER, POSE, frame('0') + "0"),
+                String.join("\n", HEADER, POSE, frame('0').substring(1)),
+                // A movement state that is not 0 or 1
+                String.join("\n", HEADER, POSE, frame('2')));
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path path = Files.createTempFile(directory, "recording", ".rec");
+        Files.writeString(path, String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+        return path;
+    }
+
+    // A frame line with every movement state set to the given character
+    private static String frame(char state) {
+        return String.valueOf(state).repeat(App.INPUT_STATES.length);
+    }
+
+}
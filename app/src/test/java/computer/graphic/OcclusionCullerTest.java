@@ -0,0 +1,108 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the occlusion culler never hides a cube that the ray caster sees.
+ */
+class OcclusionCullerTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    @Test
+    void solidWorldKeepsEveryVisibleCube() {
+        Simulation simulation = TestWorlds.create(12);
+        assertEquals(List.of(), hiddenVisibleCubes(simulation, new Random(1), 20));
+    }
+
+    @Test
+    void sparseWorldKeepsEveryVisibleCube() {
+        Simulation simulation = TestWorlds.create(12);
+        TestWorlds.removeRandomCubes(simulation, new Random(2), 0.5);
+        assertEquals(List.of(), hiddenVisibleCubes(simulation, new Random(3), 20));
+    }
+
+    @Test
+    void farCubesStillOccludeTogether() {
+        // Seen head-on from afar, each cube covers less than a texel, only the front layer should remain
+        int size = 24;
+        Simulation simulation = TestWorlds.create(size);
+        double extent = size * simulation.getCubeSize();
+        double[] origin = simulation.getOrigin();
+        Camera camera = new Camera();
+        camera.setPosition(new double[] { origin[0] + extent / 2, origin[1] + extent / 2, origin[2] - extent * 1.5 });
+        camera.setSurface_normal(new double[] { 0, 0, 1 });
+        camera.setUp_vector(new double[] { 0, 1, 0 });
+
+        int visible = new OcclusionCuller().cull(simulation, camera, WIDTH, HEIGHT).size();
+        assertTrue(visible < 2 * size * size, visible + " cubes visible of " + size * size * size);
+    }
+
+    @Test
+    void reusedCullerFollowsEditsAndCameraMoves() {
+        Simulation simulation = TestWorlds.create(12);
+        Random random = new Random(4);
+        OcclusionCuller reused = new OcclusionCuller();
+        for (int trial = 0; trial < 10; trial++) {
+            Camera camera = TestWorlds.orbitCamera(simulation, random);
+            assertEquals(new OcclusionCuller().cull(simulation, camera, WIDTH, HEIGHT),
+                    reused.cull(simulation, camera, WIDTH, HEIGHT), "trial " + trial);
+
+            // Move the camera a little within its cell, then edit the world
+            camera.setPosition(util.vectorAddition(camera.getPosition(), new double[] { 0.5, 0.5, 0.5 }));
+            assertEquals(new OcclusionCuller().cull(simulation, camera, WIDTH, HEIGHT),
+                    reused.cull(simulation, camera, WIDTH, HEIGHT), "trial " + trial + " after moving");
+            TestWorlds.removeRandomCubes(simulation, random, 0.1);
+            assertEquals(new OcclusionCuller().cull(simulation, camera, WIDTH, HEIGHT),
+                    reused.cull(simulation, camera, WIDTH, HEIGHT), "trial " + trial + " after editing");
+        }
+    }
+
+    /**
+     * Cull the world from random poses orbiting around it, and find the cubes hit by the ray of a pixel
+     * that the culler dropped.
+     *
+     * @return a description of each dropped cube
+     */
+    private static List<String> hiddenVisibleCubes(Simulation simulation, Random random, int trials) {
+        OcclusionCuller culler = new OcclusionCuller();
+        List<String> hidden = new ArrayList<String>();
+        for (int trial = 0; trial < trials; trial++) {
+            Camera camera = TestWorlds.orbitCamera(simulation, random);
+            Set<Cube> visible = Collections.newSetFromMap(new IdentityHashMap<Cube, Boolean>());
+            visible.addAll(culler.cull(simulation, camera, WIDTH, HEIGHT));
+
+            Set<String> dropped = ConcurrentHashMap.newKeySet();
+            Cube[][][] world = simulation.getWorld();
+            double[] position = camera.getPosition();
+            IntStream.range(0, HEIGHT).parallel().forEach(py -> {
+                RayCaster.RayHit hit = new RayCaster.RayHit();
+                for (int px = 0; px < WIDTH; px++) {
+                    double[] direction = TestWorlds.pixelDirection(camera, px, py, WIDTH, HEIGHT);
+                    if (RayCaster.trace(simulation, position, direction, Double.POSITIVE_INFINITY, hit)
+                            && !visible.contains(world[hit.x][hit.y][hit.z])) {
+                        dropped.add("cube (" + hit.x + ", " + hit.y + ", " + hit.z + ")");
+                    }
+                }
+            });
+            for (String cube : dropped) {
+                hidden.add("trial " + trial + ": " + cube);
+            }
+        }
+        return hidden;
+    }
+
+}
@@ -0,0 +1,116 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the picking queries against brute force ray/box intersections.
+ */
+class PickerTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void pickRayFindsTheFirstCube() {
+        Random random = new Random(5);
+        Simulation simulation = TestWorlds.create(10, 4);
+        TestWorlds.removeRandomCubes(simulation, random, 0.9);
+        double extent = simulation.getSize() * simulation.getCubeSize();
+        double[] grid_origin = simulation.getOrigin();
+
+        for (int ray = 0; ray < 2000; ray++) {
+            double[] origin = new double[3];
+            for (int i = 0; i < 3; i++) {
+                origin[i] = grid_origin[i] + (random.nextDouble() * 3 - 1) * extent;
+            }
+            // The direction does not need to be normalized
+            double[] normalized = TestWorlds.randomUnitVector(random);
+            double[] direction = util.scalarProduct(normalized, 0.1 + random.nextDouble() * 10);
+
+            double[] expected = TestWorlds.bruteForceHit(simulation, origin, normalized);
+            Picker.Pick pick = Picker.pickRay(simulation, origin, direction);
+            if (expected == null) {
+                assertNull(pick, "pick of ray " + ray);
+                continue;
+            }
+            assertEquals(expected[0], pick.distance, TOLERANCE, "distance of ray " + ray);
+            assertSame(simulation.getWorld()[pick.x][pick.y][pick.z], pick.cube, "cube of ray " + ray);
+
+            // The face is the side of the hit cell the point is on
+            int axis = pick.face.ordinal() / 2;
+            int[] cell = { pick.x, pick.y, pick.z };
+            double min = grid_origin[axis] + cell[axis] * simulation.getCubeSize();
+            double side = pick.face.ordinal() % 2 == 0 ? min : min + simulation.getCubeSize();
+            assertEquals(side, pick.point[axis], TOLERANCE, "face of ray " + ray);
+        }
+    }
+
+    @Test
+    void facesAreNamedLikeTheTemplate() {
+        Simulation simulation = TestWorlds.create(1);
+        double[] center = simulation.getWorld()[0][0][0].getCenter();
+
+        // Looking along +z from the front of the cube hits its front face, on the negative z side
+        double[] front = { center[0], center[1], center[2] - 100 };
+        assertEquals(Picker.Face.FRONT, Picker.pickRay(simulation, front, new double[] { 0, 0, 1 }).face);
+        double[] above = { center[0], center[1] + 100, center[2] };
+        assertEquals(Picker.Face.TOP, Picker.pickRay(simulation, above, new double[] { 0, -1, 0 }).face);
+        double[] left = { center[0] - 100, center[1], center[2] };
+        assertEquals(Picker.Face.LEFT, Picker.pickRay(simulation, left, new double[] { 1, 0, 0 }).face);
+    }
+
+    @Test
+    void theCenterOfTheScreenPicksForward() {
+        Random random = new Random(6);
+        Simulation simulation = TestWorlds.create(8);
+        for (int trial = 0; trial < 20; trial++) {
+            Camera camera = TestWorlds.orbitCamera(simulation, random);
+            Picker.Pick forward = Picker.pickForward(simulation, camera);
+            Picker.Pick center = Picker.pickScreen(simulation, camera, 400, 300, 800, 600);
+            if (forward == null) {
+                assertNull(center);
+                continue;
+            }
+            assertSame(forward.cube, center.cube);
+            assertEquals(forward.distance, center.distance, TOLERANCE);
+        }
+    }
+
+    @Test
+    void batchesMatchSingleQueries() {
+        Random random = new Random(7);
+        Simulation simulation = TestWorlds.create(8);
+        TestWorlds.removeRandomCubes(simulation, random, 0.7);
+        Camera camera = TestWorlds.orbitCamera(simulation, random);
+
+        double[][] points = new double[500][];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new double[] { random.nextDouble() * 800, random.nextDouble() * 600 };
+        }
+        Picker.Pick[] picks = Picker.pickScreen(simulation, camera, points, 800, 600);
+        for (int i = 0; i < points.length; i++) {
+            Picker.Pick single = Picker.pickScreen(simulation, camera, points[i][0], points[i][1], 800, 600);
+            if (single == null) {
+                assertNull(picks[i]);
+                continue;
+            }
+            assertSame(single.cube, picks[i].cube);
+            assertEquals(single.face, picks[i].face);
+            assertEquals(single.distance, picks[i].distance, TOLERANCE);
+        }
+    }
+
+    @Test
+    void aZeroDirectionIsRejected() {
+        Simulation simulation = TestWorlds.create(1);
+        assertThrows(IllegalArgumentException.class,
+                () -> Picker.pickRay(simulation, new double[] { 0, 0, -100 }, new double[] { 0, 0, 0 }));
+    }
+
+}
@@ -0,0 +1,106 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the grid traversal of the ray caster against brute force ray/box intersections.
+ */
+class RayCasterTest {
+
+    // Rays crossing an edge or a corner can hit several cells at the same distance
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void traceFindsTheFirstCubeOfSparseWorlds() {
+        Random random = new Random(4);
+        for (int world = 0; world < 12; world++) {
+            int size = 4 + random.nextInt(12);
+            Simulation simulation = TestWorlds.create(size, 1 + random.nextInt(6));
+            TestWorlds.removeRandomCubes(simulation, random, 0.8 + random.nextDouble() * 0.19);
+            checkRandomRays(simulation, random, 1000);
+        }
+    }
+
+    @Test
+    void traceSkipsTheCubeContainingTheOrigin() {
+        Simulation simulation = TestWorlds.create(3);
+        double cube_size = simulation.getCubeSize();
+        double[] origin = simulation.getOrigin();
+        double[] center = { origin[0] + 1.5 * cube_size, origin[1] + 1.5 * cube_size, origin[2] + 1.5 * cube_size };
+
+        RayCaster.RayHit hit = new RayCaster.RayHit();
+        assertTrue(RayCaster.trace(simulation, center, new double[] { 1, 0, 0 }, Double.POSITIVE_INFINITY, hit));
+        assertEquals(2, hit.x);
+        assertEquals(1, hit.y);
+        assertEquals(1, hit.z);
+        assertEquals(0, hit.face_axis);
+        assertEquals(-1, hit.face_sign);
+        assertEquals(cube_size / 2, hit.distance, TOLERANCE);
+    }
+
+    @Test
+    void traceStopsAtTheMaximumDistance() {
+        Simulation simulation = TestWorlds.create(2);
+        double[] origin = simulation.getOrigin();
+        double[] start = { origin[0] - 100, origin[1] + 10, origin[2] + 10 };
+        double[] direction = { 1, 0, 0 };
+
+        RayCaster.RayHit hit = new RayCaster.RayHit();
+        assertFalse(RayCaster.trace(simulation, start, direction, 99, hit));
+        assertTrue(RayCaster.trace(simulation, start, direction, 101, hit));
+        assertEquals(100, hit.distance, TOLERANCE);
+    }
+
+    /**
+     * Cast random rays, starting inside and outside of the world, and compare them with the brute force hits.
+     */
+    private static void checkRandomRays(Simulation simulation, Random random, int count) {
+        double extent = simulation.getSize() * simulation.getCubeSize();
+        double[] grid_origin = simulation.getOrigin();
+        RayCaster.RayHit hit = new RayCaster.RayHit();
+
+        for (int ray = 0; ray < count; ray++) {
+            double[] origin = new double[3];
+            for (int i = 0; i < 3; i++) {
+                origin[i] = grid_origin[i] + (random.nextDouble() * 3 - 1) * extent;
+            }
+            double[] direction = TestWorlds.randomUnitVector(random);
+            // Some rays are aligned with an axis, which the traversal handles separately
+            if (ray % 10 == 0) {
+                direction = new double[3];
+                direction[random.nextInt(3)] = random.nextBoolean() ? 1 : -1;
+            }
+
+            double[] expected = TestWorlds.bruteForceHit(simulation, origin, direction);
+            boolean found = RayCaster.trace(simulation, origin, direction, Double.POSITIVE_INFINITY, hit);
+            assertEquals(expected != null, found, "hit of ray " + ray);
+            if (expected == null) {
+                continue;
+            }
+            assertEquals(expected[0], hit.distance, TOLERANCE, "distance of ray " + ray);
+            assertTrue(simulation.isOccupied(hit.x, hit.y, hit.z), "cell of ray " + ray);
+
+            // The hit point is on the face of the hit cell
+            int[] cell = { hit.x, hit.y, hit.z };
+            double cube_size = simulation.getCubeSize();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(origin[i] + hit.distance * direction[i], hit.point[i], TOLERANCE, "point of ray " + ray);
+                double min = grid_origin[i] + cell[i] * cube_size;
+                if (i == hit.face_axis) {
+                    assertEquals(hit.face_sign < 0 ? min : min + cube_size, hit.point[i], TOLERANCE,
+                            "face of ray " + ray);
+                } else {
+                    assertTrue(hit.point[i] >= min - TOLERANCE && hit.point[i] <= min + cube_size + TOLERANCE,
+                            "point of ray " + ray);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,247 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Drives a RenderServer on a temporary Unix domain socket with the RenderClient.
+ */
+class RenderServerTest {
+
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+
+    @TempDir
+    Path directory;
+
+    private int queue_capacity;
+    private long max_pending_bytes;
+    private boolean log_latency;
+    private ExecutorService clients;
+
+    @BeforeEach
+    void saveSettings() {
+        queue_capacity = RenderServer.QUEUE_CAPACITY;
+        max_pending_bytes = RenderServer.MAX_PENDING_BYTES;
+        log_latency = RenderServer.LOG_LATENCY;
+        RenderServer.LOG_LATENCY = false;
+        clients = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void restoreSettings() {
+        RenderServer.QUEUE_CAPACITY = queue_capacity;
+        RenderServer.MAX_PENDING_BYTES = max_pending_bytes;
+        RenderServer.LOG_LATENCY = log_latency;
+        clients.shutdownNow();
+    }
+
+    @Test
+    void framesMatchALocalRender() throws IOException {
+        Simulation simulation = TestWorlds.create(6);
+        List<double[]> poses = randomPoses(simulation, new Random(1), 3);
+        try (RenderServer server = startServer(simulation); RenderClient client = new RenderClient(server.getAddress())) {
+            RenderClient.Response response = client.render("world", WIDTH, HEIGHT, poses);
+            assertEquals(RenderServer.STATUS_OK, response.status);
+            assertEquals(poses.size(), response.frames.size());
+            assertTrue(response.latency_nanos > 0);
+            for (int i = 0; i < poses.size(); i++) {
+                assertArrayEquals(renderLocally(simulation, poses.get(i)), response.frames.get(i), "frame " + i);
+            }
+        }
+    }
+
+    @Test
+    void identicalPosesAreRenderedOnce() throws IOException {
+        Simulation simulation = TestWorlds.create(6);
+        List<double[]> poses = randomPoses(simulation, new Random(2), 2);
+        poses.add(poses.get(0).clone());
+        poses.add(poses.get(1).clone());
+        try (RenderServer server = startServer(simulation); RenderClient client = new RenderClient(server.getAddress())) {
+            RenderClient.Response response = client.render("world", WIDTH, HEIGHT, poses);
+            assertEquals(RenderServer.STATUS_OK, response.status);
+            assertEquals(4, response.frames.size());
+            assertArrayEquals(response.frames.get(0), response.frames.get(2));
+            assertArrayEquals(response.frames.get(1), response.frames.get(3));
+            assertEquals(2, server.getRenderedFrames());
+        }
+    }
+
+    @Test
+    void unknownWorldKeepsTheConnection() throws IOException {
+        Simulation simulation = TestWorlds.create(2);
+        List<double[]> poses = randomPoses(simulation, new Random(3), 1);
+        try (RenderServer server = startServer(simulation); RenderClient client = new RenderClient(server.getAddress())) {
+            assertEquals(RenderServer.STATUS_UNKNOWN_WORLD, client.render("other", WIDTH, HEIGHT, poses).status);
+            assertEquals(RenderServer.STATUS_OK, client.render("world", WIDTH, HEIGHT, poses).status);
+        }
+    }
+
+    @Test
+    void badRequestsAreRejected() throws IOException {
+        Simulation simulation = TestWorlds.create(2);
+        List<double[]> poses = randomPoses(simulation, new Random(4), 1);
+        try (RenderServer server = startServer(simulation)) {
+            try (RenderClient client = new RenderClient(server.getAddress())) {
+                assertEquals(RenderServer.STATUS_BAD_REQUEST, client.render("world", 0, HEIGHT, poses).status);
+            }
+            try (RenderClient client = new RenderClient(server.getAddress())) {
+                int size = RenderServer.MAX_FRAME_SIZE + 1;
+                assertEquals(RenderServer.STATUS_BAD_REQUEST, client.render("world", size, size, poses).status);
+            }
+        }
+    }
+
+    @Test
+    void fullQueueAnswersBusy() throws Exception {
+        RenderServer.QUEUE_CAPACITY = 1;
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Simulation simulation = blockingWorld(rendering, release);
+        List<double[]> poses = randomPoses(simulation, new Random(5), 1);
+        try (RenderServer server = startServer(simulation)) {
+            // The first request holds the render thread, so the queue only has room for one of the next two
+            Future<RenderClient.Response> first = submit(server, poses);
+            assertTrue(rendering.await(10, TimeUnit.SECONDS));
+            List<Future<RenderClient.Response>> next = List.of(submit(server, poses), submit(server, poses));
+
+            Future<RenderClient.Response> rejected = firstDone(next);
+            assertEquals(RenderServer.STATUS_BUSY, rejected.get().status);
+            release.countDown();
+            assertEquals(RenderServer.STATUS_OK, first.get(10, TimeUnit.SECONDS).status);
+            for (Future<RenderClient.Response> response : next) {
+                if (response != rejected) {
+                    assertEquals(RenderServer.STATUS_OK, response.get(10, TimeUnit.SECONDS).status);
+                }
+            }
+        }
+    }
+
+    @Test
+    void pendingFramesAboveTheLimitAnswerBusy() throws Exception {
+        // Room for the frames of one request of one pose, but not two
+        RenderServer.MAX_PENDING_BYTES = (long) WIDTH * HEIGHT * 3 + 100;
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Simulation simulation = blockingWorld(rendering, release);
+        List<double[]> poses = randomPoses(simulation, new Random(6), 1);
+        try (RenderServer server = startServer(simulation); RenderClient client = new RenderClient(server.getAddress())) {
+            Future<RenderClient.Response> first = submit(server, poses);
+            assertTrue(rendering.await(10, TimeUnit.SECONDS));
+            assertEquals(RenderServer.STATUS_BUSY, client.render("world", WIDTH, HEIGHT, poses).status);
+
+            // The reservation is released once the first request is answered
+            release.countDown();
+            assertEquals(RenderServer.STATUS_OK, first.get(10, TimeUnit.SECONDS).status);
+            assertEquals(RenderServer.STATUS_OK, client.render("world", WIDTH, HEIGHT, poses).status);
+        }
+    }
+
+    @Test
+    void failedRenderingAnswersFrameFailed() throws IOException {
+        Simulation simulation = new Simulation() {
+            @Override
+            public int applyEdits() {
+                throw new IllegalStateException("broken world");
+            }
+        };
+        List<double[]> poses = randomPoses(simulation, new Random(7), 2);
+        try (RenderServer server = startServer(simulation); RenderClient client = new RenderClient(server.getAddress())) {
+            RenderClient.Response response = client.render("world", WIDTH, HEIGHT, poses);
+            assertEquals(RenderClient.STATUS_FAILED, response.status);
+            assertEquals(0, response.frames.size());
+
+            // The server keeps serving the other worlds
+            server.registerWorld("other", TestWorlds.create(2));
+            assertEquals(RenderServer.STATUS_OK, client.render("other", WIDTH, HEIGHT, poses).status);
+        }
+    }
+
+    private RenderServer startServer(Simulation simulation) throws IOException {
+        RenderServer server = new RenderServer(UnixDomainSocketAddress.of(directory.resolve("render.sock")));
+        server.registerWorld("world", simulation);
+        return server;
+    }
+
+    private Future<RenderClient.Response> submit(RenderServer server, List<double[]> poses) {
+        return clients.submit(() -> {
+            try (RenderClient client = new RenderClient(server.getAddress())) {
+                return client.render("world", WIDTH, HEIGHT, poses);
+            }
+        });
+    }
+
+    private static Future<RenderClient.Response> firstDone(List<Future<RenderClient.Response>> responses)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (Future<RenderClient.Response> response : responses) {
+                if (response.isDone()) {
+                    return response;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("No response within 10 seconds");
+    }
+
+    /**
+     * A world whose edits are applied once the release latch opens, so that it holds the render thread.
+     */
+    private static Simulation blockingWorld(CountDownLatch rendering, CountDownLatch release) {
+        return new Simulation() {
+            @Override
+            public int applyEdits() {
+                rendering.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.applyEdits();
+            }
+        };
+    }
+
+    private static List<double[]> randomPoses(Simulation simulation, Random random, int count) {
+        List<double[]> poses = new ArrayList<double[]>();
+        for (int i = 0; i < count; i++) {
+            Camera camera = TestWorlds.orbitCamera(simulation, random);
+            double[] pose = new double[9];
+            System.arraycopy(camera.getPosition(), 0, pose, 0, 3);
+            System.arraycopy(camera.getSurface_normal(), 0, pose, 3, 3);
+            System.arraycopy(camera.getUp_vector(), 0, pose, 6, 3);
+            poses.add(pose);
+        }
+        return poses;
+    }
+
+    private static byte[] renderLocally(Simulation simulation, double[] pose) {
+        Camera camera = new Camera();
+        camera.setPosition(new double[] { pose[0], pose[1], pose[2] });
+        camera.setSurface_normal(new double[] { pose[3], pose[4], pose[5] });
+        camera.setUp_vector(new double[] { pose[6], pose[7], pose[8] });
+        Framebuffer framebuffer = new Framebuffer(WIDTH, HEIGHT);
+        RayCaster.render(simulation, camera, framebuffer);
+        return RenderServer.encodePPM(framebuffer);
+    }
+
+}
@@ -0,0 +1,112 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that projecting the instances of the cube template gives the same segments as projecting the
+ * absolute edges of each cube, the way the Renderer did before the cubes shared a template.
+ */
+class RendererTest {
+
+    private double[] position;
+    private double[] surface_normal;
+    private double[] up_vector;
+
+    @BeforeEach
+    void saveCamera() {
+        position = Camera.INSTANCE.getPosition();
+        surface_normal = Camera.INSTANCE.getSurface_normal();
+        up_vector = Camera.INSTANCE.getUp_vector();
+    }
+
+    @AfterEach
+    void restoreCamera() {
+        Camera.INSTANCE.setPosition(position);
+        Camera.INSTANCE.setSurface_normal(surface_normal);
+        Camera.INSTANCE.setUp_vector(up_vector);
+    }
+
+    @Test
+    void instancedProjectionMatchesTheAbsoluteEdges() {
+        Random random = new Random(3);
+        for (int trial = 0; trial < 2000; trial++) {
+            // Cubes around the camera, so that some edges cross the camera plane
+            Camera.INSTANCE.setPosition(new double[] { random.nextGaussian() * 60, random.nextGaussian() * 60,
+                    random.nextGaussian() * 60 });
+            double[] normal = TestWorlds.randomUnitVector(random);
+            Camera.INSTANCE.setSurface_normal(normal);
+            double[] up = util.crossProduct(normal, new double[] { 0.3, 0.9, 0.1 });
+            Camera.INSTANCE.setUp_vector(TestWorlds.normalize(up));
+            Cube cube = new Cube(new double[] { random.nextGaussian() * 30, random.nextGaussian() * 30,
+                    random.nextGaussian() * 30 }, 10 + random.nextDouble() * 50);
+
+            List<double[]> expected = projectEdges(cube.getEdges(), Camera.INSTANCE);
+            List<double[]> actual = Renderer.projectCube(cube);
+            assertEquals(expected.size(), actual.size(), "segments of trial " + trial);
+            for (int i = 0; i < expected.size(); i++) {
+                for (int j = 0; j < 4; j++) {
+                    double tolerance = 1e-6 * Math.max(1, Math.abs(expected.get(i)[j]));
+                    assertEquals(expected.get(i)[j], actual.get(i)[j], tolerance,
+                            "segment " + i + " of trial " + trial);
+                }
+            }
+        }
+    }
+
+    /**
+     * Project absolute edges the way the Renderer did before the cubes shared a template.
+     * The edges crossing the camera plane end on the plane, scaled far out of the screen.
+     */
+    private static List<double[]> projectEdges(double[][][] edges, Camera camera) {
+        double[] position = camera.getPosition();
+        double[] normal = camera.getSurface_normal();
+        double[] up = camera.getUp_vector();
+        double[] right = util.crossProduct(normal, up);
+        double d = util.dotProduct(normal, position);
+
+        List<double[]> segments = new ArrayList<double[]>();
+        for (double[][] edge : edges) {
+            double[] vertex1 = util.vectorSubtraction(edge[0], position);
+            double[] vertex2 = util.vectorSubtraction(edge[1], position);
+            double dot1 = util.dotProduct(vertex1, normal);
+            double dot2 = util.dotProduct(vertex2, normal);
+
+            double[] starting;
+            double[] ending;
+            if (dot1 > 0 && dot2 > 0) {
+                starting = project(vertex1, normal, up, right, d);
+                ending = project(vertex2, normal, up, right, d);
+            } else if (dot1 < 0 && dot2 < 0) {
+                continue;
+            } else {
+                starting = project(dot1 > 0 ? vertex1 : vertex2, normal, up, right, d);
+                double[] intersection = util.linePlaneIntersection(new double[] { normal[0], normal[1], normal[2], d },
+                        edge[0], edge[1]);
+                if (intersection == null) {
+                    continue;
+                }
+                intersection = util.vectorSubtraction(intersection, position);
+                ending = new double[] { util.dotProduct(intersection, right) * 10000,
+                        util.dotProduct(intersection, up) * 10000 };
+            }
+            segments.add(new double[] { starting[0], starting[1], ending[0], ending[1] });
+        }
+        return segments;
+    }
+
+    private static double[] project(double[] vertex, double[] normal, double[] up, double[] right, double d) {
+        double[] projected = util.pointProjection(new double[] { normal[0], normal[1], normal[2], d }, vertex);
+        double z = util.dotProduct(vertex, normal);
+        return new double[] { Camera.FOCAL_LENGTH * util.dotProduct(projected, right) / z,
+                Camera.FOCAL_LENGTH * util.dotProduct(projected, up) / z };
+    }
+
+}
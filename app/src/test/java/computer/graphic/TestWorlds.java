@@ -0,0 +1,160 @@
+package computer.graphic;
+
+import java.util.Random;
+
+/**
+ * Worlds and cameras shared by the tests.
+ */
+final class TestWorlds {
+
+    private TestWorlds() {
+    }
+
+    /**
+     * Create a solid world of the given size, without changing the default size of the simulations.
+     */
+    static Simulation create(int size) {
+        return create(size, Simulation.CHUNK_SIZE);
+    }
+
+    /**
+     * Create a solid world of the given size and chunk size, without changing the defaults of the simulations.
+     */
+    static Simulation create(int size, int chunk_size) {
+        int world_size = Simulation.WORLD_SIZE;
+        int default_chunk_size = Simulation.CHUNK_SIZE;
+        Simulation.WORLD_SIZE = size;
+        Simulation.CHUNK_SIZE = chunk_size;
+        try {
+            return new Simulation();
+        } finally {
+            Simulation.WORLD_SIZE = world_size;
+            Simulation.CHUNK_SIZE = default_chunk_size;
+        }
+    }
+
+    /**
+     * Remove each cube of a world with the given probability.
+     */
+    static void removeRandomCubes(Simulation simulation, Random random, double probability) {
+        int size = simulation.getSize();
+        WorldEdit edit = new WorldEdit();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (random.nextDouble() < probability) {
+                        edit.remove(x, y, z);
+                    }
+                }
+            }
+        }
+        simulation.submit(edit);
+        simulation.applyEdits();
+    }
+
+    /**
+     * Create a camera outside of the world, looking near its center from a random direction.
+     */
+    static Camera orbitCamera(Simulation simulation, Random random) {
+        double extent = simulation.getSize() * simulation.getCubeSize();
+        double[] center = new double[3];
+        for (int i = 0; i < 3; i++) {
+            center[i] = simulation.getOrigin()[i] + extent / 2;
+        }
+
+        double[] direction = randomUnitVector(random);
+        double distance = extent * (1 + random.nextDouble() * 1.5);
+        double[] position = util.vectorAddition(center, util.scalarProduct(direction, distance));
+
+        // Look at a point near the center, so that the world is not always centered on the screen
+        double[] target = new double[3];
+        for (int i = 0; i < 3; i++) {
+            target[i] = center[i] + (random.nextDouble() - 0.5) * extent * 0.5;
+        }
+        double[] surface_normal = normalize(util.vectorSubtraction(target, position));
+        double[] up_vector = normalize(util.crossProduct(randomUnitVector(random), surface_normal));
+
+        Camera camera = new Camera();
+        camera.setPosition(position);
+        camera.setSurface_normal(surface_normal);
+        camera.setUp_vector(up_vector);
+        return camera;
+    }
+
+    /**
+     * Get the normalized direction of the ray of a pixel, the same as the RayCaster.
+     */
+    static double[] pixelDirection(Camera camera, int px, int py, int width, int height) {
+        double x = px + 0.5 - width / 2.0;
+        double y = -(py + 0.5) + height / 2.0;
+        double[] surface_normal = camera.getSurface_normal();
+        double[] up_vector = camera.getUp_vector();
+        double[] right_vector = util.crossProduct(surface_normal, up_vector);
+        double[] direction = new double[3];
+        for (int i = 0; i < 3; i++) {
+            direction[i] = Camera.FOCAL_LENGTH * surface_normal[i] + x * right_vector[i] + y * up_vector[i];
+        }
+        return normalize(direction);
+    }
+
+    /**
+     * Find the first cube along a ray by intersecting the ray with the box of every occupied cell.
+     * The cell containing the origin of the ray is ignored, like in RayCaster.trace.
+     *
+     * @param direction the normalized direction of the ray
+     * @return the first hit as [distance, x, y, z, face axis], or null if the ray hits nothing
+     */
+    static double[] bruteForceHit(Simulation simulation, double[] origin, double[] direction) {
+        int size = simulation.getSize();
+        double cube_size = simulation.getCubeSize();
+        double[] grid_origin = simulation.getOrigin();
+        double[] best = null;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (!simulation.isOccupied(x, y, z)) {
+                        continue;
+                    }
+                    int[] cell = { x, y, z };
+                    double t_near = Double.NEGATIVE_INFINITY;
+                    double t_far = Double.POSITIVE_INFINITY;
+                    int axis = -1;
+                    for (int i = 0; i < 3; i++) {
+                        double min = grid_origin[i] + cell[i] * cube_size;
+                        double max = min + cube_size;
+                        if (direction[i] == 0) {
+                            if (origin[i] < min || origin[i] > max) {
+                                t_near = Double.POSITIVE_INFINITY;
+                            }
+                            continue;
+                        }
+                        double t1 = (min - origin[i]) / direction[i];
+                        double t2 = (max - origin[i]) / direction[i];
+                        if (Math.min(t1, t2) > t_near) {
+                            t_near = Math.min(t1, t2);
+                            axis = i;
+                        }
+                        t_far = Math.min(t_far, Math.max(t1, t2));
+                    }
+                    // Skip the missed cells, and the cell containing the origin
+                    if (t_near > t_far || t_near < 0) {
+                        continue;
+                    }
+                    if (best == null || t_near < best[0]) {
+                        best = new double[] { t_near, x, y, z, axis };
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    static double[] randomUnitVector(Random random) {
+        return normalize(new double[] { random.nextGaussian(), random.nextGaussian(), random.nextGaussian() });
+    }
+
+    static double[] normalize(double[] vector) {
+        return util.scalarProduct(vector, 1 / Math.sqrt(util.dotProduct(vector, vector)));
+    }
+
+}
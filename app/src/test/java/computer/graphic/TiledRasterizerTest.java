@@ -0,0 +1,125 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that binning the lines into tiles draws the same pixels as drawing the whole screen as one tile.
+ */
+class TiledRasterizerTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private final int tile_size = TiledRasterizer.TILE_SIZE;
+
+    @AfterEach
+    void restoreTileSize() {
+        TiledRasterizer.TILE_SIZE = tile_size;
+    }
+
+    @Test
+    void tilesMatchASingleTile() {
+        Random random = new Random(8);
+        int width = 333;
+        int height = 250;
+        for (int trial = 0; trial < 20; trial++) {
+            List<double[]> segments = new ArrayList<double[]>();
+            for (int i = 0; i < 200; i++) {
+                // Most segments are on the screen, some go far out of it
+                double spread = i % 10 == 0 ? 5000 : 200;
+                segments.add(new double[] { random.nextGaussian() * spread, random.nextGaussian() * spread,
+                        random.nextGaussian() * spread, random.nextGaussian() * spread });
+            }
+            // Segments along the borders of the tiles, where seams would show
+            segments.add(new double[] { 64 - width / 2.0, -200, 64 - width / 2.0, 200 });
+            segments.add(new double[] { -200, height / 2.0 - 128, 200, height / 2.0 - 128 });
+            segments.add(new double[] { 0, 0, 0, 0 });
+
+            TiledRasterizer.TILE_SIZE = 64;
+            int[] tiled = render(segments, width, height);
+            TiledRasterizer.TILE_SIZE = Math.max(width, height);
+            int[] single = render(segments, width, height);
+            assertArrayEquals(single, tiled, "pixels of trial " + trial);
+        }
+    }
+
+    @Test
+    void strokesAreDrawn() {
+        TiledRasterizer.TILE_SIZE = 64;
+        List<double[]> segments = new ArrayList<double[]>();
+        segments.add(new double[] { -100, 0, 100, 0 });
+        int[] pixels = render(segments, 200, 100);
+        int stroke = 0;
+        for (int pixel : pixels) {
+            if (pixel == TiledRasterizer.STROKE_COLOR) {
+                stroke++;
+            }
+        }
+        assertEquals(200 * TiledRasterizer.STROKE_WIDTH, stroke);
+    }
+
+    @Test
+    void clipKeepsTheInsideOfALine() {
+        double[] line = { -10, 5, 30, 5 };
+        assertTrue(TiledRasterizer.clip(line, 0, 0, 0, 20, 10));
+        assertArrayEquals(new double[] { 0, 5, 20, 5 }, line, TOLERANCE);
+
+        // A diagonal crossing two sides
+        line = new double[] { -10, -10, 30, 30 };
+        assertTrue(TiledRasterizer.clip(line, 0, 0, 0, 20, 10));
+        assertArrayEquals(new double[] { 0, 0, 10, 10 }, line, TOLERANCE);
+
+        // The line is read and written at the offset
+        line = new double[] { 99, 99, 5, -5, 5, 15 };
+        assertTrue(TiledRasterizer.clip(line, 2, 0, 0, 20, 10));
+        assertArrayEquals(new double[] { 99, 99, 5, 0, 5, 10 }, line, TOLERANCE);
+    }
+
+    @Test
+    void clipRejectsParallelLinesOutside() {
+        assertFalse(TiledRasterizer.clip(new double[] { -10, 15, 30, 15 }, 0, 0, 0, 20, 10));
+        assertFalse(TiledRasterizer.clip(new double[] { -5, -10, -5, 30 }, 0, 0, 0, 20, 10));
+
+        // A parallel line on a side of the rectangle is kept
+        double[] line = { -10, 10, 30, 10 };
+        assertTrue(TiledRasterizer.clip(line, 0, 0, 0, 20, 10));
+        assertArrayEquals(new double[] { 0, 10, 20, 10 }, line, TOLERANCE);
+    }
+
+    @Test
+    void clipHandlesDegenerateLines() {
+        double[] inside = { 5, 5, 5, 5 };
+        assertTrue(TiledRasterizer.clip(inside, 0, 0, 0, 20, 10));
+        assertArrayEquals(new double[] { 5, 5, 5, 5 }, inside, TOLERANCE);
+        assertFalse(TiledRasterizer.clip(new double[] { 25, 5, 25, 5 }, 0, 0, 0, 20, 10));
+    }
+
+    @Test
+    void clipRejectsLinesOutside() {
+        // Crossing the corner region without entering the rectangle
+        assertFalse(TiledRasterizer.clip(new double[] { -10, 5, 5, -10 }, 0, 0, 0, 20, 10));
+        assertFalse(TiledRasterizer.clip(new double[] { 30, 20, 40, 50 }, 0, 0, 0, 20, 10));
+    }
+
+    private static int[] render(List<double[]> segments, int width, int height) {
+        Framebuffer framebuffer = new Framebuffer(width, height);
+        TiledRasterizer.rasterize(segments, framebuffer);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = framebuffer.getPixel(x, y);
+            }
+        }
+        return pixels;
+    }
+
+}
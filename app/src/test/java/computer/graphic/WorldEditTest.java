@@ -0,0 +1,110 @@
+package computer.graphic;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the batches of edits applied by Simulation.applyEdits keep the world and its derived state in sync.
+ */
+class WorldEditTest {
+
+    @Test
+    void editsAreOnlyAppliedByApplyEdits() {
+        Simulation simulation = TestWorlds.create(4);
+        simulation.submit(new WorldEdit().remove(1, 2, 3));
+
+        assertTrue(simulation.isOccupied(1, 2, 3));
+        assertEquals(0, simulation.getVersion());
+
+        assertEquals(1, simulation.applyEdits());
+        assertFalse(simulation.isOccupied(1, 2, 3));
+        assertEquals(1, simulation.getVersion());
+    }
+
+    @Test
+    void emptyingAChunkIsTracked() {
+        Simulation simulation = TestWorlds.create(4, 2);
+
+        // Empty the chunk (1, 0, 1), which covers the cells (2..3, 0..1, 2..3)
+        WorldEdit edit = new WorldEdit();
+        for (int x = 2; x < 4; x++) {
+            for (int y = 0; y < 2; y++) {
+                for (int z = 2; z < 4; z++) {
+                    edit.remove(x, y, z);
+                }
+            }
+        }
+        simulation.submit(edit);
+        assertFalse(simulation.isChunkEmpty(1, 0, 1));
+        assertEquals(8, simulation.applyEdits());
+
+        assertTrue(simulation.isChunkEmpty(1, 0, 1));
+        assertFalse(simulation.isChunkEmpty(0, 0, 0));
+        assertFalse(simulation.isChunkEmpty(1, 1, 1));
+        assertFalse(simulation.isOccupied(3, 1, 2));
+        assertTrue(simulation.isOccupied(1, 1, 2));
+
+        // Placing a single cube makes the chunk non-empty again
+        simulation.submit(new WorldEdit().place(3, 0, 2));
+        assertEquals(1, simulation.applyEdits());
+        assertFalse(simulation.isChunkEmpty(1, 0, 1));
+        assertTrue(simulation.isOccupied(3, 0, 2));
+        assertEquals(2, simulation.getVersion());
+    }
+
+    @Test
+    void editsThatChangeNothingKeepTheVersion() {
+        Simulation simulation = TestWorlds.create(2);
+        simulation.submit(new WorldEdit().place(0, 0, 0).place(1, 1, 1));
+
+        assertEquals(0, simulation.applyEdits());
+        assertEquals(0, simulation.getVersion());
+        assertEquals(0, simulation.applyEdits());
+        assertEquals(0, simulation.getVersion());
+    }
+
+    @Test
+    void batchesAreAppliedInOrder() {
+        Simulation simulation = TestWorlds.create(2);
+        simulation.submit(new WorldEdit().remove(0, 1, 0).place(0, 1, 0).remove(1, 0, 1));
+        simulation.submit(new WorldEdit().place(1, 0, 1).remove(1, 1, 0));
+
+        assertEquals(5, simulation.applyEdits());
+        assertTrue(simulation.isOccupied(0, 1, 0));
+        assertTrue(simulation.isOccupied(1, 0, 1));
+        assertFalse(simulation.isOccupied(1, 1, 0));
+        assertEquals(1, simulation.getVersion());
+    }
+
+    @Test
+    void placedCubesAreCenteredOnTheirCell() {
+        Simulation simulation = TestWorlds.create(3);
+        Cube original = simulation.getWorld()[2][0][1];
+        simulation.submit(new WorldEdit().remove(2, 0, 1));
+        simulation.applyEdits();
+        simulation.submit(new WorldEdit().place(2, 0, 1));
+        simulation.applyEdits();
+
+        Cube placed = simulation.getWorld()[2][0][1];
+        assertArrayEquals(original.getCenter(), placed.getCenter(), 1e-9);
+        assertEquals(original.getSize(), placed.getSize());
+    }
+
+    @Test
+    void editsOutsideOfTheWorldAreRejected() {
+        Simulation simulation = TestWorlds.create(2);
+        assertThrows(IllegalArgumentException.class, () -> new WorldEdit().place(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> simulation.submit(new WorldEdit().remove(0, 2, 0)));
+
+        // A rejected batch is not applied at all
+        assertEquals(0, simulation.applyEdits());
+        assertTrue(simulation.isOccupied(0, 1, 0));
+        assertFalse(simulation.isOccupied(0, 2, 0));
+    }
+
+}